@@ -0,0 +1,36 @@
+package com.fhirhub.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Point d'entrée des benchmarks JMH de FHIRHub
+ * 
+ * Usage : BenchmarkRunner [regex des benchmarks] [fichier de résultats]
+ * Le profileur GC est toujours actif pour publier l'allocation par opération
+ * (gc.alloc.rate.norm) ; les résultats sont écrits en JSON pour être archivés
+ * et comparés d'une version à l'autre.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : "com\\.fhirhub\\..*Benchmark";
+        String resultFile = args.length > 1 ? args[1] : "jmh-result.json";
+        
+        Options options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile)
+                .build();
+        
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,224 @@
+package com.fhirhub.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Test de charge de /api/convert à forte concurrence
+ *
+ * Maintient N requêtes simultanées (une par connexion, 10 000 par défaut)
+ * pendant la durée demandée, puis affiche le débit, les percentiles de latence
+ * et les pics relevés sur /actuator/prometheus pendant le test (threads JVM,
+ * mémoire heap et hors heap, file des appels SQLite).
+ *
+ * Comparaison threads de plateforme / threads virtuels : lancer l'application
+ * une fois avec fhirhub.virtual-threads.enabled=false, une fois avec true, et
+ * exécuter ce test contre chaque instance (prévoir ulimit -n > 2 x N côté
+ * client et serveur).
+ *
+ * Usage : ConvertLoadTest [url de base] [clé API] [connexions] [durée en s] [libellé]
+ */
+public final class ConvertLoadTest {
+
+    // Latences à la milliseconde près, jusqu'à 60 s
+    private static final int MAX_LATENCY_MS = 60_000;
+
+    private static final String[][] SCRAPED_METRICS = {
+        {"threads.live", "jvm_threads_live_threads", ""},
+        {"threads.peak", "jvm_threads_peak_threads", ""},
+        {"memory.heap.bytes", "jvm_memory_used_bytes", "area=\"heap\""},
+        {"memory.nonheap.bytes", "jvm_memory_used_bytes", "area=\"nonheap\""},
+        {"jdbc.offload.queue", "fhirhub_jdbc_offload_queue_depth", ""},
+        {"admission.limit", "fhirhub_admission_limit", ""},
+        {"admission.queued", "fhirhub_admission_queued", ""},
+    };
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final String apiKey;
+    private final String body;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicLongArray latencies = new AtomicLongArray(MAX_LATENCY_MS + 1);
+    private final Map<String, Double> peaks = new LinkedHashMap<>();
+
+    private volatile long deadline;
+
+    private ConvertLoadTest(String baseUrl, String apiKey, String hl7Message) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        this.baseUrl = baseUrl;
+        this.apiKey = apiKey;
+        this.body = "{\"hl7\":\"" + escapeJson(hl7Message) + "\"}";
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:5000";
+        String apiKey = args.length > 1 ? args[1] : "demo-api-key";
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        int durationSeconds = args.length > 3 ? Integer.parseInt(args[3]) : 60;
+        String label = args.length > 4 ? args[4] : "run";
+
+        ConvertLoadTest test = new ConvertLoadTest(baseUrl, apiKey, Hl7Corpus.adt(Hl7Corpus.ADT_FULL_PID));
+        test.run(connections, durationSeconds);
+        test.report(label, connections, durationSeconds);
+    }
+
+    private void run(int connections, int durationSeconds) throws Exception {
+        ScheduledExecutorService scraper = Executors.newSingleThreadScheduledExecutor();
+        scraper.scheduleAtFixedRate(this::scrape, 0, 2, TimeUnit.SECONDS);
+
+        deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+        CompletableFuture<?>[] loops = new CompletableFuture<?>[connections];
+        for (int i = 0; i < connections; i++) {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            loops[i] = done;
+            loop(done);
+        }
+        CompletableFuture.allOf(loops).get(durationSeconds + 120L, TimeUnit.SECONDS);
+
+        scraper.shutdown();
+        scraper.awaitTermination(10, TimeUnit.SECONDS);
+        scrape();
+    }
+
+    /**
+     * Enchaîner les requêtes d'une connexion jusqu'à la fin du test
+     */
+    private void loop(CompletableFuture<Void> done) {
+        if (System.nanoTime() >= deadline) {
+            done.complete(null);
+            return;
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/convert"))
+                .header("Content-Type", "application/json")
+                .header("X-API-Key", apiKey)
+                .timeout(Duration.ofSeconds(MAX_LATENCY_MS / 1000))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        long start = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    latencies.incrementAndGet((int) Math.min(latencyMs, MAX_LATENCY_MS));
+                    if (error == null && response.statusCode() == 200) {
+                        completed.increment();
+                    } else if (error == null && response.statusCode() == 429) {
+                        // Refus du contrôle d'admission
+                        rejected.increment();
+                    } else {
+                        failed.increment();
+                    }
+                    loop(done);
+                });
+    }
+
+    /**
+     * Relever les métriques du serveur et conserver leur maximum
+     */
+    private void scrape() {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/prometheus"))
+                    .timeout(Duration.ofSeconds(10))
+                    .build();
+            String exposition = client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+
+            for (String[] metric : SCRAPED_METRICS) {
+                double value = sum(exposition, metric[1], metric[2]);
+                synchronized (peaks) {
+                    peaks.merge(metric[0], value, Math::max);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Relevé des métriques impossible: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Somme des échantillons d'une métrique dont les étiquettes contiennent le filtre
+     */
+    private static double sum(String exposition, String name, String labelFilter) {
+        double total = 0;
+        for (String line : exposition.split("\n")) {
+            if (line.startsWith("#") || !line.startsWith(name)) {
+                continue;
+            }
+            int end = name.length();
+            if (end < line.length() && line.charAt(end) != '{' && line.charAt(end) != ' ') {
+                continue;
+            }
+            if (!labelFilter.isEmpty() && !line.contains(labelFilter)) {
+                continue;
+            }
+            total += Double.parseDouble(line.substring(line.lastIndexOf(' ') + 1));
+        }
+        return total;
+    }
+
+    private void report(String label, int connections, int durationSeconds) {
+        long ok = completed.sum();
+        long errors = failed.sum();
+
+        System.out.printf("%n=== %s : %d connexions, %d s ===%n", label, connections, durationSeconds);
+        System.out.printf("Requêtes réussies : %d (%.1f req/s), refusées (429) : %d, échecs : %d%n",
+            ok, ok / (double) durationSeconds, rejected.sum(), errors);
+        System.out.printf("Latence p50 %d ms, p90 %d ms, p99 %d ms, max %d ms%n",
+            percentile(0.50), percentile(0.90), percentile(0.99), percentile(1.0));
+        synchronized (peaks) {
+            peaks.forEach((name, value) -> System.out.printf("Pic %s : %.0f%n", name, value));
+        }
+    }
+
+    private long percentile(double quantile) {
+        long total = 0;
+        for (int i = 0; i < latencies.length(); i++) {
+            total += latencies.get(i);
+        }
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < latencies.length(); i++) {
+            seen += latencies.get(i);
+            if (seen >= rank && seen > 0) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private static String escapeJson(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 16);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': escaped.append("\\\""); break;
+                case '\\': escaped.append("\\\\"); break;
+                case '\r': escaped.append("\\r"); break;
+                case '\n': escaped.append("\\n"); break;
+                default:
+                    if (c < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,45 @@
+package com.fhirhub.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Corpus de messages HL7 versionné pour les benchmarks (src/jmh/resources/corpus)
+ */
+public final class Hl7Corpus {
+
+    /**
+     * Messages ADT disponibles, du plus petit au plus volumineux
+     */
+    public static final String ADT_MINIMAL = "adt_a01_minimal";
+    public static final String ADT_FULL_PID = "adt_a01_full_pid";
+    public static final String ADT_Z_SEGMENTS = "adt_a01_z_segments";
+    
+    /**
+     * Sortie (structure ADT_A03) avec diagnostic et observations
+     */
+    public static final String ADT_DISCHARGE = "adt_a03_discharge";
+
+    private Hl7Corpus() {
+    }
+
+    /**
+     * Charger un message ADT du corpus
+     * Les fichiers sont versionnés avec des fins de ligne Unix, on les normalise
+     * vers le séparateur de segments HL7 (\r) attendu par le parseur
+     */
+    public static String adt(String name) {
+        String resource = "/corpus/adt/" + name + ".hl7";
+        try (InputStream in = Hl7Corpus.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Message introuvable dans le corpus: " + resource);
+            }
+            String content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            return content.replace("\r\n", "\r").replace('\n', '\r');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
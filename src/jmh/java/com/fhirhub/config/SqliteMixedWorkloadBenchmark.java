@@ -0,0 +1,134 @@
+package com.fhirhub.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark de charge mixte sur le stockage des logs : un thread insère des logs
+ * (conversions) pendant que trois threads lisent les statistiques (tableau de bord).
+ * DELETE correspond au journal par défaut d'avant le profil, WAL au profil actuel ;
+ * le débit du thread "write" montre l'effet des lectures sur les conversions.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Group)
+public class SqliteMixedWorkloadBenchmark {
+
+    private static final int SEED_ROWS = 10_000;
+
+    private static final String INSERT_SQL =
+        "INSERT INTO conversion_logs (input_file, output_file, success, message, message_type, "
+        + "patient_id, fhir_resource_count, source_type, timestamp) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Param({"DELETE", "WAL"})
+    public String journalMode;
+
+    private Path directory;
+    private HikariDataSource writeDataSource;
+    private HikariDataSource readDataSource;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        directory = Files.createTempDirectory("fhirhub-sqlite-bench");
+        String url = "jdbc:sqlite:" + directory.resolve("fhirhub.db");
+        
+        SqliteStorageProfile profile = SqliteStorageProfile.builder()
+            .journalMode(journalMode)
+            .synchronous("WAL".equals(journalMode) ? "NORMAL" : "FULL")
+            .build();
+        writeDataSource = profile.writePool(url);
+        
+        try (Connection connection = writeDataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE conversion_logs (id integer primary key, input_file varchar, "
+                + "output_file varchar, success integer, message varchar, message_type varchar, "
+                + "patient_id varchar, fhir_resource_count varchar, source_type varchar, timestamp timestamp)");
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+                for (int i = 0; i < SEED_ROWS; i++) {
+                    bind(insert, i);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            connection.commit();
+        }
+        
+        readDataSource = profile.readPool(url, 3);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        readDataSource.close();
+        writeDataSource.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public int write() throws SQLException {
+        try (Connection connection = writeDataSource.getConnection();
+             PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+            bind(insert, (int) System.nanoTime());
+            return insert.executeUpdate();
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public long read() throws SQLException {
+        try (Connection connection = readDataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                 "SELECT COUNT(*), SUM(success) FROM conversion_logs")) {
+            resultSet.next();
+            return resultSet.getLong(1) + resultSet.getLong(2);
+        }
+    }
+
+    private static void bind(PreparedStatement insert, int i) throws SQLException {
+        insert.setString(1, "input_" + i + ".hl7");
+        insert.setString(2, "output_" + i + ".json");
+        insert.setBoolean(3, i % 10 != 0);
+        insert.setString(4, "Conversion réussie");
+        insert.setString(5, "ADT^A01");
+        insert.setString(6, "PAT" + i);
+        insert.setString(7, "1");
+        insert.setString(8, "FILE");
+        insert.setTimestamp(9, new Timestamp(System.currentTimeMillis()));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SqliteMixedWorkloadBenchmark.class.getSimpleName())
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-sqlite-mixed.json")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,149 @@
+package com.fhirhub.repository;
+
+import com.fhirhub.config.SqliteStorageProfile;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark des requêtes de ConversionLogRepository (SQL équivalent à celui
+ * généré par Hibernate) sur 1M et 10M de logs répartis sur 90 jours,
+ * avec et sans les index de SchemaMigrator.
+ * Le remplissage de la table à 10M lignes prend plusieurs minutes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class ConversionLogFinderBenchmark {
+
+    private static final long HISTORY_MILLIS = TimeUnit.DAYS.toMillis(90);
+    private static final int PATIENTS = 100_000;
+
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    @Param({"false", "true"})
+    public boolean indexed;
+
+    private Path directory;
+    private HikariDataSource writeDataSource;
+    private HikariDataSource readDataSource;
+    private long now;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        directory = Files.createTempDirectory("fhirhub-finder-bench");
+        String url = "jdbc:sqlite:" + directory.resolve("fhirhub.db");
+        SqliteStorageProfile profile = SqliteStorageProfile.builder().build();
+        writeDataSource = profile.writePool(url);
+        now = System.currentTimeMillis();
+        
+        try (Connection connection = writeDataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            // Même DDL que ddl-auto=update avec SQLiteDialect
+            statement.execute("CREATE TABLE conversion_logs (id integer, fhir_resource_count varchar(255), "
+                + "input_file varchar(255) not null, message varchar(2000), message_type varchar(255), "
+                + "output_file varchar(255), patient_id varchar(255), source_type varchar(255), "
+                + "success integer not null, timestamp timestamp not null, primary key (id))");
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "WITH RECURSIVE seq(n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM seq WHERE n < ?) "
+                    + "INSERT INTO conversion_logs (input_file, output_file, success, message, message_type, "
+                    + "patient_id, fhir_resource_count, source_type, timestamp) "
+                    + "SELECT 'input_' || n || '.hl7', 'output_' || n || '.json', n % 10 != 0, 'Conversion', "
+                    + "CASE n % 3 WHEN 0 THEN 'ADT^A01' WHEN 1 THEN 'ADT^A04' ELSE 'ADT^A08' END, "
+                    + "'PAT' || (n % ?), '2', 'FILE', ? - (? - n) * ? FROM seq")) {
+                insert.setInt(1, rows);
+                insert.setInt(2, PATIENTS);
+                insert.setLong(3, now);
+                insert.setInt(4, rows);
+                insert.setLong(5, HISTORY_MILLIS / rows);
+                insert.executeUpdate();
+            }
+        }
+        
+        if (indexed) {
+            new SchemaMigrator(writeDataSource).migrate();
+        }
+        readDataSource = profile.readPool(url, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        readDataSource.close();
+        writeDataSource.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long countSuccessfulConversions() throws SQLException {
+        return count("SELECT COUNT(*) FROM conversion_logs WHERE success = 1");
+    }
+
+    @Benchmark
+    public long countConversionsLast24Hours() throws SQLException {
+        return count("SELECT COUNT(*) FROM conversion_logs WHERE timestamp >= " + (now - TimeUnit.HOURS.toMillis(24)));
+    }
+
+    @Benchmark
+    public long findByPatientId() throws SQLException {
+        return count("SELECT * FROM conversion_logs WHERE patient_id = 'PAT"
+            + ThreadLocalRandom.current().nextInt(PATIENTS) + "'");
+    }
+
+    @Benchmark
+    public long findByTimestampBetween() throws SQLException {
+        return count("SELECT * FROM conversion_logs WHERE timestamp BETWEEN "
+            + (now - TimeUnit.HOURS.toMillis(1)) + " AND " + now);
+    }
+
+    @Benchmark
+    public long findAllByOrderByTimestampDesc() throws SQLException {
+        return count("SELECT * FROM conversion_logs ORDER BY timestamp DESC LIMIT 20 OFFSET 0");
+    }
+
+    /**
+     * Exécuter la requête et parcourir tout le résultat
+     */
+    private long count(String sql) throws SQLException {
+        long result = 0;
+        try (Connection connection = readDataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            while (resultSet.next()) {
+                result += resultSet.getLong(1);
+            }
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ConversionLogFinderBenchmark.class.getSimpleName())
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-conversion-log-finders.json")
+                .build();
+        new Runner(options).run();
+    }
+}
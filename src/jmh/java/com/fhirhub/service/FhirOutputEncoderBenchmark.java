@@ -0,0 +1,58 @@
+package com.fhirhub.service;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.hl7v2.DefaultHapiContext;
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import com.fhirhub.benchmark.Hl7Corpus;
+import com.fhirhub.service.mapping.MappingEngine;
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark de l'encodage d'un bundle dans chaque format de sortie
+ * Le temps d'encodage est mesuré par JMH ; la taille en octets par bundle
+ * est affichée une fois par essai (ligne "bytes-per-bundle").
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Thread)
+public class FhirOutputEncoderBenchmark {
+
+    @Param({"JSON", "JSON_PRETTY", "XML", "CBOR", "SMILE"})
+    public FhirOutputFormat format;
+
+    @Param({Hl7Corpus.ADT_MINIMAL, Hl7Corpus.ADT_FULL_PID})
+    public String corpus;
+
+    private FhirOutputEncoder encoder;
+    private Bundle bundle;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+
+    @Setup(Level.Trial)
+    public void setUp() throws HL7Exception, IOException {
+        encoder = new FhirOutputEncoder(FhirContext.forR4(), ConversionMetrics.disabled(), false, 64);
+        Hl7ParserPool parserPool = new Hl7ParserPool(new DefaultHapiContext(), 1, 64);
+        Hl7ToFhirConverter converter = new Hl7ToFhirConverter(parserPool, ConversionCache.disabled(), MappingEngine.withDefaultMappers(), ConversionMetrics.disabled(), true);
+        
+        Message message = converter.parse(Hl7Corpus.adt(corpus));
+        bundle = converter.map(message, converter.determineMessageType(message));
+        
+        encoder.encode(bundle, format, out);
+        System.out.printf("%nbytes-per-bundle format=%s corpus=%s: %d%n", format, corpus, out.size());
+    }
+
+    @Benchmark
+    public int encode() throws IOException {
+        out.reset();
+        encoder.encode(bundle, format, out);
+        return out.size();
+    }
+}
@@ -0,0 +1,101 @@
+package com.fhirhub.service;
+
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.DateType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark du parsing des dates HL7 : ancien parseHl7Date (SimpleDateFormat
+ * créé à chaque appel, puis Date re-enveloppée par HAPI) contre Hl7DateTimeParser.
+ * Le setup vérifie aussi, sur des dates aléatoires dans les formats acceptés
+ * par l'ancien code, que les deux donnent la même date de naissance, puis
+ * lance le test différentiel complet (Hl7DateTimeParserFuzz).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Hl7DateTimeParserBenchmark {
+
+    private static final int DIFFERENTIAL_SAMPLES = 100_000;
+
+    @Param({"19800115", "198001151230", "19800115123045"})
+    public String hl7Date;
+
+    @Setup(Level.Trial)
+    public void verifyAgainstLegacy() throws ParseException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < DIFFERENTIAL_SAMPLES; i++) {
+            String value = String.format("%04d%02d%02d%02d%02d%02d",
+                random.nextInt(1900, 2100), random.nextInt(1, 13), random.nextInt(1, 29),
+                random.nextInt(24), random.nextInt(60), random.nextInt(60));
+            String input = value.substring(0, new int[]{8, 12, 14}[random.nextInt(3)]);
+            
+            String legacy = new DateType(legacyParseHl7Date(input)).getValueAsString();
+            String current = Hl7DateTimeParser.parseDate(input).getValueAsString();
+            if (!legacy.equals(current)) {
+                throw new IllegalStateException("Divergence pour " + input + ": " + legacy + " / " + current);
+            }
+        }
+        
+        Hl7DateTimeParserFuzz.run(DIFFERENTIAL_SAMPLES, random.nextLong());
+    }
+
+    @Benchmark
+    public DateType legacy() throws ParseException {
+        return new DateType(legacyParseHl7Date(hl7Date));
+    }
+
+    @Benchmark
+    public DateType parseDate() {
+        return Hl7DateTimeParser.parseDate(hl7Date);
+    }
+
+    @Benchmark
+    public DateTimeType parseDateTime() {
+        return Hl7DateTimeParser.parseDateTime(hl7Date);
+    }
+
+    /**
+     * Copie de l'ancienne implémentation de Hl7ToFhirConverter.parseHl7Date
+     */
+    private static Date legacyParseHl7Date(String hl7Date) throws ParseException {
+        String format;
+        if (hl7Date.length() == 8) {
+            format = "yyyyMMdd";
+        } else if (hl7Date.length() == 12) {
+            format = "yyyyMMddHHmm";
+        } else if (hl7Date.length() == 14) {
+            format = "yyyyMMddHHmmss";
+        } else {
+            throw new IllegalArgumentException("Format de date non reconnu: " + hl7Date);
+        }
+        
+        SimpleDateFormat sdf = new SimpleDateFormat(format);
+        return sdf.parse(hl7Date);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(Hl7DateTimeParserBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-hl7-date.json")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,336 @@
+package com.fhirhub.service;
+
+import ca.uhn.fhir.model.api.TemporalPrecisionEnum;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.DateType;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.regex.Pattern;
+
+/**
+ * Test différentiel aléatoire de Hl7DateTimeParser contre une référence java.time
+ *
+ * Chaque échantillon est une valeur DTM générée au hasard : toutes les
+ * précisions (YYYY à YYYYMMDDHHMMSS), fractions de 1 à 4 chiffres, fuseaux
+ * +/-HHMM, jours 29 à 31 (y compris inexistants), ou une valeur invalide
+ * (longueur, caractère, mois, heure, fraction ou fuseau hors format).
+ * Pour une valeur valide, l'instant et la précision doivent égaler ceux de la
+ * référence et la chaîne produite doit respecter la grammaire R4 de dateTime ;
+ * une valeur invalide doit lever IllegalArgumentException. Les vérifications
+ * sont répétées dans plusieurs fuseaux locaux (changements d'heure compris).
+ *
+ * Usage : Hl7DateTimeParserFuzz [échantillons par fuseau] [graine]
+ */
+public final class Hl7DateTimeParserFuzz {
+
+    private static final String[] LOCAL_ZONES = {"UTC", "Europe/Paris", "America/New_York", "Australia/Lord_Howe"};
+
+    // Grammaires R4 (http://hl7.org/fhir/R4/datatypes.html)
+    private static final Pattern FHIR_DATE_TIME = Pattern.compile(
+        "([0-9]([0-9]([0-9][1-9]|[1-9]0)|[1-9]00)|[1-9]000)(-(0[1-9]|1[0-2])(-(0[1-9]|[1-2][0-9]|3[0-1])"
+        + "(T([01][0-9]|2[0-3]):[0-5][0-9]:([0-5][0-9]|60)(\\.[0-9]+)?(Z|(\\+|-)((0[0-9]|1[0-3]):[0-5][0-9]|14:00)))?)?)?");
+    private static final Pattern FHIR_DATE = Pattern.compile(
+        "([0-9]([0-9]([0-9][1-9]|[1-9]0)|[1-9]00)|[1-9]000)(-(0[1-9]|1[0-2])(-(0[1-9]|[1-2][0-9]|3[0-1]))?)?");
+
+    private static final int[] DIGIT_LENGTHS = {4, 6, 8, 10, 12, 14};
+
+    private final Random random;
+    private long valid;
+    private long invalid;
+
+    private Hl7DateTimeParserFuzz(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public static void main(String[] args) {
+        int samples = args.length > 0 ? Integer.parseInt(args[0]) : 250_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        run(samples, seed);
+    }
+
+    /**
+     * Exécuter le test dans chaque fuseau local de référence
+     * @throws IllegalStateException à la première divergence (avec la graine pour la rejouer)
+     */
+    public static void run(int samplesPerZone, long seed) {
+        TimeZone original = TimeZone.getDefault();
+        Hl7DateTimeParserFuzz fuzz = new Hl7DateTimeParserFuzz(seed);
+        try {
+            for (String zone : LOCAL_ZONES) {
+                TimeZone.setDefault(TimeZone.getTimeZone(zone));
+                for (int i = 0; i < samplesPerZone; i++) {
+                    fuzz.sample(zone, seed);
+                }
+            }
+        } finally {
+            TimeZone.setDefault(original);
+        }
+        System.out.printf("Hl7DateTimeParser : %d valeur(s) valide(s) et %d invalide(s) conformes (graine %d)%n",
+            fuzz.valid, fuzz.invalid, seed);
+    }
+
+    private void sample(String zone, long seed) {
+        if (random.nextInt(4) == 0) {
+            String input = invalidValue();
+            expectRejected(input, zone, seed);
+            invalid++;
+            return;
+        }
+
+        Sample sample = validValue();
+        if (!sample.dayExists) {
+            // Jour 29 à 31 inexistant pour le mois tiré : valeur invalide
+            expectRejected(sample.input, zone, seed);
+            invalid++;
+            return;
+        }
+        check(sample, zone, seed);
+        valid++;
+    }
+
+    /**
+     * Valeur aléatoire dans le format DTM (le jour tiré peut ne pas exister)
+     */
+    private Sample validValue() {
+        Sample sample = new Sample();
+        // À partir de 1920 : avant (heure moyenne locale, PMT...), java.util.TimeZone (parseur, HAPI) et java.time
+        // n'ont pas les mêmes décalages historiques locaux
+        sample.year = 1920 + random.nextInt(480);
+        sample.month = 1 + random.nextInt(12);
+        // Jours 29 à 31 surreprésentés
+        sample.day = random.nextInt(3) == 0 ? 29 + random.nextInt(3) : 1 + random.nextInt(31);
+        sample.hour = random.nextInt(24);
+        sample.minute = random.nextInt(60);
+        sample.second = random.nextInt(60);
+        sample.digits = DIGIT_LENGTHS[random.nextInt(DIGIT_LENGTHS.length)];
+
+        StringBuilder value = new StringBuilder(String.format("%04d%02d%02d%02d%02d%02d",
+            sample.year, sample.month, sample.day, sample.hour, sample.minute, sample.second));
+        value.setLength(sample.digits);
+        if (sample.digits < 14) {
+            sample.second = 0;
+        }
+        if (sample.digits < 12) {
+            sample.minute = 0;
+        }
+        if (sample.digits < 10) {
+            sample.hour = 0;
+        }
+        if (sample.digits < 8) {
+            sample.day = 1;
+        }
+        if (sample.digits < 6) {
+            sample.month = 1;
+        }
+
+        if (sample.digits == 14 && random.nextBoolean()) {
+            int fractionDigits = 1 + random.nextInt(4);
+            StringBuilder fraction = new StringBuilder();
+            for (int i = 0; i < fractionDigits; i++) {
+                fraction.append((char) ('0' + random.nextInt(10)));
+            }
+            value.append('.').append(fraction);
+            // Millisecondes : trois premiers chiffres, le quatrième est tronqué
+            String millis = (fraction + "00").substring(0, 3);
+            sample.millis = Integer.parseInt(millis);
+            sample.fraction = true;
+        }
+
+        if (random.nextBoolean()) {
+            int hours = random.nextInt(15);
+            int minutes = hours == 14 ? 0 : random.nextInt(60);
+            boolean negative = random.nextBoolean() && hours <= 12;
+            value.append(negative ? '-' : '+').append(String.format("%02d%02d", hours, minutes));
+            sample.offsetMinutes = (negative ? -1 : 1) * (hours * 60 + minutes);
+            sample.hasOffset = true;
+        }
+
+        sample.input = value.toString();
+        sample.dayExists = sample.day <= YearMonth.of(sample.year, sample.month).lengthOfMonth();
+        return sample;
+    }
+
+    private String invalidValue() {
+        String base = String.format("%04d%02d%02d%02d%02d%02d",
+            1600 + random.nextInt(800), 1 + random.nextInt(12), 1 + random.nextInt(28),
+            random.nextInt(24), random.nextInt(60), random.nextInt(60));
+
+        switch (random.nextInt(10)) {
+            case 0:
+                // Longueur de la partie date/heure hors format
+                int[] lengths = {0, 1, 2, 3, 5, 7, 9, 11, 13};
+                return base.substring(0, lengths[random.nextInt(lengths.length)]);
+            case 1:
+                return base + (1 + random.nextInt(9));
+            case 2: {
+                // Caractère non numérique
+                char[] chars = base.substring(0, DIGIT_LENGTHS[random.nextInt(DIGIT_LENGTHS.length)]).toCharArray();
+                chars[random.nextInt(chars.length)] = " AZaz/:T".charAt(random.nextInt(8));
+                return new String(chars);
+            }
+            case 3:
+                // Mois 00 ou 13 à 99
+                return base.substring(0, 4) + String.format("%02d", random.nextBoolean() ? 0 : 13 + random.nextInt(87))
+                    + base.substring(6, 8);
+            case 4:
+                // Jour 00 ou 32 à 99, heure 24 à 99, minute ou seconde 60 à 99
+                switch (random.nextInt(4)) {
+                    case 0:
+                        return base.substring(0, 6) + String.format("%02d", random.nextBoolean() ? 0 : 32 + random.nextInt(68));
+                    case 1:
+                        return base.substring(0, 8) + (24 + random.nextInt(76));
+                    case 2:
+                        return base.substring(0, 10) + (60 + random.nextInt(40));
+                    default:
+                        return base.substring(0, 12) + (60 + random.nextInt(40));
+                }
+            case 5:
+                // Fraction sans secondes, vide ou de plus de 4 chiffres
+                switch (random.nextInt(3)) {
+                    case 0:
+                        return base.substring(0, DIGIT_LENGTHS[random.nextInt(5)]) + ".5";
+                    case 1:
+                        return base + ".";
+                    default:
+                        return base + "." + String.format("%05d", random.nextInt(100_000));
+                }
+            case 6:
+                // Fuseau de longueur incorrecte
+                String[] offsets = {"+", "-1", "+010", "-01000", "+1"};
+                return base.substring(0, DIGIT_LENGTHS[random.nextInt(DIGIT_LENGTHS.length)])
+                    + offsets[random.nextInt(offsets.length)];
+            case 7:
+                // Fuseau hors plage (heures > 14, minutes > 59) ou non numérique
+                String[] badOffsets = {"+1500", "-2300", "+0160", "+01A0", "+-100"};
+                return base + badOffsets[random.nextInt(badOffsets.length)];
+            case 8:
+                // 29 février d'une année non bissextile
+                int[] commonYears = {1700, 1800, 1900, 2001, 2019, 2100, 2023};
+                return commonYears[random.nextInt(commonYears.length)] + "0229" + base.substring(8, 8 + 2 * random.nextInt(4));
+            default:
+                // 31 d'un mois de 30 jours
+                int[] shortMonths = {4, 6, 9, 11};
+                return base.substring(0, 4) + String.format("%02d", shortMonths[random.nextInt(4)]) + "31";
+        }
+    }
+
+    private void check(Sample sample, String zone, long seed) {
+        DateTimeType dateTime;
+        DateType date;
+        try {
+            dateTime = Hl7DateTimeParser.parseDateTime(sample.input);
+            date = Hl7DateTimeParser.parseDate(sample.input);
+        } catch (IllegalArgumentException e) {
+            throw divergence(sample.input, zone, seed, "valeur valide refusée: " + e.getMessage());
+        }
+
+        // Référence : heure locale dans le fuseau du message, ou le fuseau local
+        // (à un chevauchement d'heure, le parseur retient le décalage le plus tardif)
+        LocalDateTime local = LocalDateTime.of(sample.year, sample.month, sample.day,
+            sample.hour, sample.minute, sample.second, sample.millis * 1_000_000);
+        ZoneId zoneId = sample.hasOffset ? ZoneOffset.ofTotalSeconds(sample.offsetMinutes * 60) : ZoneId.systemDefault();
+        long expectedInstant = ZonedDateTime.ofLocal(local, zoneId, null).withLaterOffsetAtOverlap()
+            .toInstant().toEpochMilli();
+
+        TemporalPrecisionEnum expectedPrecision;
+        if (sample.fraction) {
+            expectedPrecision = TemporalPrecisionEnum.MILLI;
+        } else if (sample.digits >= 10) {
+            expectedPrecision = TemporalPrecisionEnum.SECOND;
+        } else if (sample.digits == 8) {
+            expectedPrecision = TemporalPrecisionEnum.DAY;
+        } else if (sample.digits == 6) {
+            expectedPrecision = TemporalPrecisionEnum.MONTH;
+        } else {
+            expectedPrecision = TemporalPrecisionEnum.YEAR;
+        }
+
+        if (dateTime.getValue().getTime() != expectedInstant) {
+            throw divergence(sample.input, zone, seed, "instant " + dateTime.getValue().toInstant()
+                + " au lieu de " + java.time.Instant.ofEpochMilli(expectedInstant));
+        }
+        if (dateTime.getPrecision() != expectedPrecision) {
+            throw divergence(sample.input, zone, seed, "précision " + dateTime.getPrecision()
+                + " au lieu de " + expectedPrecision);
+        }
+
+        String dateTimeString = dateTime.getValueAsString();
+        if (!FHIR_DATE_TIME.matcher(dateTimeString).matches()) {
+            throw divergence(sample.input, zone, seed, "dateTime R4 invalide: " + dateTimeString);
+        }
+        String expectedDate = expectedDateString(sample, expectedPrecision);
+        if (expectedPrecision.ordinal() <= TemporalPrecisionEnum.DAY.ordinal() && !dateTimeString.equals(expectedDate)) {
+            throw divergence(sample.input, zone, seed, "dateTime " + dateTimeString + " au lieu de " + expectedDate);
+        }
+        if (!dateTimeString.startsWith(expectedDateString(sample, TemporalPrecisionEnum.DAY).substring(0, 4))) {
+            throw divergence(sample.input, zone, seed, "année incorrecte: " + dateTimeString);
+        }
+
+        // Date seule : la partie heure et le fuseau sont ignorés
+        TemporalPrecisionEnum datePrecision = expectedPrecision.ordinal() > TemporalPrecisionEnum.DAY.ordinal()
+            ? TemporalPrecisionEnum.DAY
+            : expectedPrecision;
+        String expectedDateOnly = expectedDateString(sample, datePrecision);
+        String dateString = date.getValueAsString();
+        if (!dateString.equals(expectedDateOnly) || !FHIR_DATE.matcher(dateString).matches()) {
+            throw divergence(sample.input, zone, seed, "date " + dateString + " au lieu de " + expectedDateOnly);
+        }
+    }
+
+    private void expectRejected(String input, String zone, long seed) {
+        try {
+            Hl7DateTimeParser.parseDateTime(input);
+        } catch (IllegalArgumentException e) {
+            try {
+                Hl7DateTimeParser.parseDate(input);
+            } catch (IllegalArgumentException expected) {
+                return;
+            }
+            throw divergence(input, zone, seed, "valeur invalide acceptée par parseDate");
+        } catch (RuntimeException e) {
+            throw divergence(input, zone, seed, "exception inattendue " + e);
+        }
+        throw divergence(input, zone, seed, "valeur invalide acceptée par parseDateTime");
+    }
+
+    private static String expectedDateString(Sample sample, TemporalPrecisionEnum precision) {
+        switch (precision) {
+            case YEAR:
+                return String.format("%04d", sample.year);
+            case MONTH:
+                return String.format("%04d-%02d", sample.year, sample.month);
+            default:
+                return String.format("%04d-%02d-%02d", sample.year, sample.month, sample.day);
+        }
+    }
+
+    private static IllegalStateException divergence(String input, String zone, long seed, String detail) {
+        return new IllegalStateException("Divergence pour \"" + input + "\" (fuseau " + zone + ", graine "
+            + seed + "): " + detail);
+    }
+
+    /**
+     * Valeur générée et composantes attendues
+     */
+    private static final class Sample {
+        String input;
+        int digits;
+        int year;
+        int month;
+        int day;
+        int hour;
+        int minute;
+        int second;
+        int millis;
+        boolean fraction;
+        boolean dayExists;
+        int offsetMinutes;
+        boolean hasOffset;
+    }
+}
@@ -0,0 +1,80 @@
+package com.fhirhub.service;
+
+import ca.uhn.hl7v2.DefaultHapiContext;
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.HapiContext;
+import ca.uhn.hl7v2.model.Message;
+import com.fhirhub.benchmark.Hl7Corpus;
+import com.fhirhub.model.ConversionResult;
+import com.fhirhub.service.mapping.MappingEngine;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark de concurrence du parsing HL7 : parseur créé à chaque appel sur le
+ * contexte partagé (comportement historique) contre parseurs du pool.
+ * Le mode SampleTime publie les percentiles (p99) ; lancer main() pour
+ * enchaîner les mesures à 1, 4, 16 et 64 threads.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class Hl7ParserConcurrencyBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 4, 16, 64};
+
+    @Param({Hl7Corpus.ADT_MINIMAL, Hl7Corpus.ADT_FULL_PID})
+    public String corpus;
+
+    private HapiContext hapiContext;
+    private Hl7ParserPool parserPool;
+    private Hl7ToFhirConverter converter;
+    private String hl7Message;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        hapiContext = new DefaultHapiContext();
+        parserPool = new Hl7ParserPool(hapiContext, 4, 64);
+        parserPool.warmUp();
+        converter = new Hl7ToFhirConverter(parserPool, ConversionCache.disabled(), MappingEngine.withDefaultMappers(), ConversionMetrics.disabled(), true);
+        hl7Message = Hl7Corpus.adt(corpus);
+    }
+
+    @Benchmark
+    public Message sharedContextParser() throws HL7Exception {
+        return hapiContext.getGenericParser().parse(hl7Message);
+    }
+
+    @Benchmark
+    public Message pooledParser() throws HL7Exception {
+        return parserPool.parse(hl7Message);
+    }
+
+    @Benchmark
+    public ConversionResult convertHl7ToFhir() {
+        return converter.convertHl7ToFhir(hl7Message);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : THREAD_COUNTS) {
+            Options options = new OptionsBuilder()
+                    .include(Hl7ParserConcurrencyBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("jmh-parser-concurrency-" + threads + "t.json")
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
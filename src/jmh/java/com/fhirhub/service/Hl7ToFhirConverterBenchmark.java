@@ -0,0 +1,84 @@
+package com.fhirhub.service;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.hl7v2.DefaultHapiContext;
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import com.fhirhub.benchmark.Hl7Corpus;
+import com.fhirhub.model.ConversionResult;
+import com.fhirhub.service.mapping.MappingEngine;
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks de Hl7ToFhirConverter, étape par étape (parse, mapping, encodage JSON)
+ * et de bout en bout (conversion et encodage), sur le corpus ADT
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Thread)
+public class Hl7ToFhirConverterBenchmark {
+
+    @Param({Hl7Corpus.ADT_MINIMAL, Hl7Corpus.ADT_FULL_PID, Hl7Corpus.ADT_Z_SEGMENTS, Hl7Corpus.ADT_DISCHARGE})
+    public String corpus;
+
+    // Parsing sélectif (segments du plan de mapping) ou complet
+    @Param({"false", "true"})
+    public boolean selectiveParsing;
+
+    private Hl7ToFhirConverter converter;
+    private FhirOutputEncoder encoder;
+    private String hl7Message;
+    private Message parsedMessage;
+    private String messageType;
+    private Bundle bundle;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+
+    @Setup(Level.Trial)
+    public void setUp() throws HL7Exception {
+        Hl7ParserPool parserPool = new Hl7ParserPool(new DefaultHapiContext(), 1, 64);
+        parserPool.warmUp();
+        converter = new Hl7ToFhirConverter(parserPool, ConversionCache.disabled(), MappingEngine.withDefaultMappers(), ConversionMetrics.disabled(), selectiveParsing);
+        encoder = new FhirOutputEncoder(FhirContext.forR4(), ConversionMetrics.disabled(), false, 64);
+        hl7Message = Hl7Corpus.adt(corpus);
+        
+        // Préparer les entrées de chaque étape pour les mesurer isolément
+        // (le premier parsing apprend les segments requis par la structure)
+        converter.parse(hl7Message);
+        parsedMessage = converter.parse(hl7Message);
+        messageType = converter.determineMessageType(parsedMessage);
+        bundle = converter.map(parsedMessage, messageType);
+    }
+
+    @Benchmark
+    public Message parse() throws HL7Exception {
+        return converter.parse(hl7Message);
+    }
+
+    @Benchmark
+    public Bundle map() throws HL7Exception {
+        return converter.map(parsedMessage, messageType);
+    }
+
+    @Benchmark
+    public int encode() throws IOException {
+        out.reset();
+        encoder.encode(bundle, FhirOutputFormat.JSON, out);
+        return out.size();
+    }
+
+    @Benchmark
+    public int convertHl7ToFhir() throws IOException {
+        ConversionResult result = converter.convertHl7ToFhir(hl7Message);
+        out.reset();
+        encoder.encode(result.getBundle(), FhirOutputFormat.JSON, out);
+        return out.size();
+    }
+}
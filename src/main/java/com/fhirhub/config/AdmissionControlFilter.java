@@ -0,0 +1,101 @@
+package com.fhirhub.config;
+
+import com.fhirhub.service.AdmissionController;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * Filtre de contrôle d'admission des conversions synchrones
+ * En surcharge, les requêtes sont mises en file par client puis, si besoin,
+ * refusées rapidement (429 et Retry-After) au lieu de s'accumuler.
+ *
+ * La clé API est unique et partagée : elle n'identifie pas un client, et l'en-tête
+ * brut n'est pas authentifié à ce stade. La file est donc celle de l'adresse du
+ * client, séparée selon que la clé présentée est valide ou non : un client sans
+ * clé valide ne peut ni créer des files à volonté ni occuper celle d'un client authentifié.
+ * Exécuté après ApiKeyAuthFilter : les requêtes refusées (401) n'alimentent pas la limite adaptative.
+ */
+@Component
+@Order(ApiKeyAuthFilter.ORDER + 1)
+@Slf4j
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private final AdmissionController admissionController;
+    private final List<String> admittedPaths;
+    private final byte[] apiKey;
+
+    public AdmissionControlFilter(AdmissionController admissionController,
+                                  @Value("${fhirhub.admission.paths:/api/convert,/api/upload}") List<String> admittedPaths,
+                                  @Value("${fhirhub.api.key}") String apiKey) {
+        this.admissionController = admissionController;
+        this.admittedPaths = admittedPaths;
+        this.apiKey = apiKey.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !admissionController.isEnabled() || !admittedPaths.contains(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        
+        String key = queueKey(request);
+        
+        AdmissionController.Permit permit;
+        try {
+            permit = admissionController.acquire(key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reject(request, response);
+            return;
+        }
+        
+        if (permit == null) {
+            reject(request, response);
+            return;
+        }
+        
+        boolean success = false;
+        try {
+            filterChain.doFilter(request, response);
+            success = response.getStatus() < HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        } finally {
+            permit.release(success);
+        }
+    }
+
+    /**
+     * File d'attente par adresse du client et validité de la clé API (jamais la valeur brute de l'en-tête)
+     */
+    private String queueKey(HttpServletRequest request) {
+        String requestApiKey = request.getHeader("X-API-Key");
+        boolean authenticated = requestApiKey != null
+            && MessageDigest.isEqual(apiKey, requestApiKey.getBytes(StandardCharsets.UTF_8));
+        return (authenticated ? "api:" : "anonyme:") + request.getRemoteAddr();
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        log.debug("Requête refusée par le contrôle d'admission. Chemin: {}, IP: {}",
+            request.getRequestURI(), request.getRemoteAddr());
+        
+        response.setStatus(429);
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(admissionController.retryAfterSeconds()));
+        response.setContentType("application/json");
+        response.getWriter().write("{\"success\":false,\"error\":\"Serveur surchargé, réessayez plus tard\"}");
+    }
+}
@@ -2,6 +2,8 @@ package com.fhirhub.config;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -15,17 +17,22 @@ import java.util.List;
 
 /**
  * Filtre pour l'authentification par clé API
+ * Exécuté avant le contrôle d'admission : une requête refusée (401) ne consomme ni permis ni place en file
  */
 @Component
+@Order(ApiKeyAuthFilter.ORDER)
 @Slf4j
 public class ApiKeyAuthFilter extends OncePerRequestFilter {
 
+    static final int ORDER = Ordered.HIGHEST_PRECEDENCE + 10;
+
     @Value("${fhirhub.api.key}")
     private String apiKey;
     
     // Chemins exemptés de l'authentification par clé API
     private final List<String> excludedPaths = Arrays.asList(
         "/api/public/health",
+        "/actuator/prometheus",
         "/",
         "/css/", 
         "/js/", 
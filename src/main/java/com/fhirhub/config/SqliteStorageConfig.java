@@ -0,0 +1,101 @@
+package com.fhirhub.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configuration du stockage SQLite des logs de conversion
+ * 
+ * Les transactions en lecture seule (lectures des repositories, tableau de bord)
+ * sont routées vers le pool de lecture, tout le reste vers le pool d'écriture.
+ */
+@Configuration
+@Slf4j
+public class SqliteStorageConfig {
+
+    private static final String WRITE = "write";
+    private static final String READ = "read";
+
+    @Value("${spring.datasource.url}")
+    private String url;
+
+    @Bean
+    public SqliteStorageProfile sqliteStorageProfile(
+            @Value("${fhirhub.sqlite.journal-mode:WAL}") String journalMode,
+            @Value("${fhirhub.sqlite.synchronous:NORMAL}") String synchronous,
+            @Value("${fhirhub.sqlite.cache-size:-20000}") int cacheSize,
+            @Value("${fhirhub.sqlite.mmap-size:268435456}") long mmapSize,
+            @Value("${fhirhub.sqlite.busy-timeout-ms:5000}") int busyTimeoutMs) {
+        return SqliteStorageProfile.builder()
+            .journalMode(journalMode)
+            .synchronous(synchronous)
+            .cacheSize(cacheSize)
+            .mmapSize(mmapSize)
+            .busyTimeoutMs(busyTimeoutMs)
+            .build();
+    }
+
+    /**
+     * Pool d'écriture : une seule connexion
+     */
+    @Bean(destroyMethod = "close")
+    public HikariDataSource writeDataSource(SqliteStorageProfile profile) {
+        log.info("Initialisation du stockage SQLite ({}): journal {}, synchronous {}",
+            url, profile.getJournalMode(), profile.getSynchronous());
+        return profile.writePool(url);
+    }
+
+    /**
+     * Pool de lecture : connexions en lecture seule
+     */
+    @Bean(destroyMethod = "close")
+    public HikariDataSource readDataSource(SqliteStorageProfile profile,
+                                           @Qualifier("writeDataSource") HikariDataSource writeDataSource,
+                                           @Value("${fhirhub.sqlite.read-pool-size:4}") int readPoolSize) throws SQLException {
+        // Ouvrir une connexion d'écriture avant les lecteurs, pour créer la base et passer en WAL
+        try (Connection ignored = writeDataSource.getConnection()) {
+            log.debug("Base SQLite prête pour les lecteurs");
+        }
+        return profile.readPool(url, readPoolSize);
+    }
+
+    /**
+     * DataSource principale utilisée par JPA et JdbcTemplate
+     * La connexion n'est obtenue qu'à la première requête, une fois
+     * l'attribut lecture seule de la transaction connu
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("writeDataSource") DataSource writeDataSource,
+                                 @Qualifier("readDataSource") DataSource readDataSource) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(WRITE, writeDataSource);
+        targets.put(READ, readDataSource);
+        
+        AbstractRoutingDataSource routingDataSource = new AbstractRoutingDataSource() {
+            @Override
+            protected Object determineCurrentLookupKey() {
+                return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? READ : WRITE;
+            }
+        };
+        routingDataSource.setTargetDataSources(targets);
+        routingDataSource.setDefaultTargetDataSource(writeDataSource);
+        routingDataSource.afterPropertiesSet();
+        
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
@@ -0,0 +1,83 @@
+package com.fhirhub.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Builder;
+import lombok.Getter;
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Profil de stockage SQLite : pragmas appliqués à chaque connexion
+ * et construction des pools d'écriture et de lecture
+ * 
+ * SQLite n'accepte qu'un écrivain à la fois : le pool d'écriture contient
+ * une seule connexion, ce qui sérialise les écritures dans l'application
+ * plutôt que de les laisser échouer en SQLITE_BUSY. En mode WAL, les
+ * lecteurs n'ont pas besoin d'attendre l'écrivain.
+ */
+@Getter
+@Builder
+public class SqliteStorageProfile {
+
+    @Builder.Default
+    private final String journalMode = "WAL";
+    
+    @Builder.Default
+    private final String synchronous = "NORMAL";
+    
+    // Valeur négative : taille en Kio plutôt qu'en pages
+    @Builder.Default
+    private final int cacheSize = -20000;
+    
+    @Builder.Default
+    private final long mmapSize = 268435456L;
+    
+    @Builder.Default
+    private final int busyTimeoutMs = 5000;
+
+    /**
+     * Créer le pool d'écriture (une seule connexion)
+     * La première connexion crée la base et fixe le mode de journal, persistant dans le fichier
+     */
+    public HikariDataSource writePool(String url) {
+        SQLiteConfig config = baseConfig();
+        config.setJournalMode(SQLiteConfig.JournalMode.valueOf(journalMode.toUpperCase()));
+        // Sans effet sur une base existante : une nouvelle base est créée directement en vacuum incrémental
+        config.setAutoVacuum(SQLiteConfig.AutoVacuum.INCREMENTAL);
+        
+        return new HikariDataSource(hikariConfig(url, "fhirhub-sqlite-write", 1, config));
+    }
+
+    /**
+     * Créer le pool de lecture (connexions ouvertes en lecture seule)
+     * Le pool d'écriture doit avoir été ouvert avant, pour que la base existe
+     */
+    public HikariDataSource readPool(String url, int poolSize) {
+        SQLiteConfig config = baseConfig();
+        config.setReadOnly(true);
+        
+        return new HikariDataSource(hikariConfig(url, "fhirhub-sqlite-read", Math.max(1, poolSize), config));
+    }
+
+    private SQLiteConfig baseConfig() {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setSynchronous(SQLiteConfig.SynchronousMode.valueOf(synchronous.toUpperCase()));
+        config.setCacheSize(cacheSize);
+        config.setBusyTimeout(busyTimeoutMs);
+        return config;
+    }
+
+    private HikariConfig hikariConfig(String url, String poolName, int poolSize, SQLiteConfig sqliteConfig) {
+        HikariConfig hikariConfig = new HikariConfig();
+        hikariConfig.setPoolName(poolName);
+        hikariConfig.setJdbcUrl(url);
+        hikariConfig.setDriverClassName("org.sqlite.JDBC");
+        hikariConfig.setMaximumPoolSize(poolSize);
+        hikariConfig.setMinimumIdle(poolSize);
+        // Les pragmas sont lus par le driver sqlite-jdbc à l'ouverture de chaque connexion
+        hikariConfig.setDataSourceProperties(sqliteConfig.toProperties());
+        // mmap_size n'est pas exposé par SQLiteConfig
+        hikariConfig.setConnectionInitSql("PRAGMA mmap_size=" + mmapSize);
+        return hikariConfig;
+    }
+}
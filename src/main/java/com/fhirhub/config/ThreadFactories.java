@@ -0,0 +1,96 @@
+package com.fhirhub.config;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fabriques de threads nommés, de plateforme ou virtuels
+ * Les threads virtuels (Java 21+) sont obtenus par réflexion afin que
+ * l'application reste compilable et exécutable sur Java 17 : sur une JVM
+ * qui ne les supporte pas, on se replie sur des threads de plateforme.
+ */
+@Slf4j
+public final class ThreadFactories {
+
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+    private static final Method IS_VIRTUAL;
+
+    static {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderFactory = null;
+        Method isVirtual = null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            builderName = builderClass.getMethod("name", String.class, long.class);
+            builderFactory = builderClass.getMethod("factory");
+            isVirtual = Thread.class.getMethod("isVirtual");
+        } catch (ReflectiveOperationException e) {
+            // JVM sans threads virtuels
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_FACTORY = builderFactory;
+        IS_VIRTUAL = isVirtual;
+    }
+
+    private ThreadFactories() {
+    }
+
+    /**
+     * Indique si la JVM courante supporte les threads virtuels
+     */
+    public static boolean isVirtualThreadSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Créer une fabrique de threads nommés prefix-0, prefix-1...
+     * @param virtual Threads virtuels si la JVM les supporte, de plateforme sinon
+     */
+    public static ThreadFactory create(String prefix, boolean virtual) {
+        if (virtual) {
+            if (isVirtualThreadSupported()) {
+                try {
+                    Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), prefix + "-", 0L);
+                    return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+                } catch (ReflectiveOperationException e) {
+                    log.warn("Impossible de créer des threads virtuels, repli sur des threads de plateforme: {}", e.getMessage());
+                }
+            } else {
+                log.warn("Threads virtuels non supportés par cette JVM ({}), repli sur des threads de plateforme",
+                    System.getProperty("java.version"));
+            }
+        }
+        return platform(prefix);
+    }
+
+    /**
+     * Indique si le thread donné est un thread virtuel
+     */
+    public static boolean isVirtual(Thread thread) {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (Boolean) IS_VIRTUAL.invoke(thread);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    private static ThreadFactory platform(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,39 @@
+package com.fhirhub.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Mode d'exécution sur threads virtuels (optionnel, Java 21+)
+ * 
+ * Chaque requête HTTP est servie par un nouveau thread virtuel au lieu du pool
+ * de threads de Tomcat. Les conversions de fichiers suivent le même réglage
+ * (fhirhub.monitoring.virtual-threads) ; les appels SQLite sont confiés à des
+ * threads de plateforme par BlockingCallExecutor.
+ */
+@Configuration
+@ConditionalOnProperty(name = "fhirhub.virtual-threads.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadConfig {
+
+    /**
+     * Remplacer l'exécuteur des connecteurs Tomcat par un thread virtuel par tâche
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        if (!ThreadFactories.isVirtualThreadSupported()) {
+            log.warn("Threads virtuels non supportés par cette JVM ({}), pool Tomcat conservé",
+                System.getProperty("java.version"));
+            return protocolHandler -> { };
+        }
+        
+        ThreadFactory threadFactory = ThreadFactories.create("fhirhub-http", true);
+        log.info("Requêtes HTTP servies sur threads virtuels");
+        return protocolHandler -> protocolHandler.setExecutor(task -> threadFactory.newThread(task).start());
+    }
+}
@@ -1,21 +1,42 @@
 package com.fhirhub.controller;
 
 import com.fhirhub.model.ConversionLog;
+import com.fhirhub.model.ConversionResult;
+import com.fhirhub.service.BatchConversionService;
+import com.fhirhub.service.ConversionCache;
+import com.fhirhub.service.ConversionCursor;
 import com.fhirhub.service.ConversionLogService;
+import com.fhirhub.service.ConversionResponseWriter;
+import com.fhirhub.service.FhirOutputEncoder;
+import com.fhirhub.service.FhirOutputFormat;
+import com.fhirhub.service.FileMonitorService;
+import com.fhirhub.service.FrenchTerminologyService;
 import com.fhirhub.service.Hl7ToFhirConverter;
+import com.fhirhub.service.RetentionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.OperationOutcome;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Contrôleur pour l'API REST
@@ -26,107 +47,117 @@ import java.util.Map;
 @Slf4j
 public class ApiController {
 
+    private static final int MAX_KEYSET_PAGE_SIZE = 1000;
+
     private final Hl7ToFhirConverter converter;
     private final ConversionLogService logService;
+    private final BatchConversionService batchConversionService;
+    private final FhirOutputEncoder outputEncoder;
+    private final ConversionResponseWriter responseWriter;
+    private final FileMonitorService fileMonitorService;
+    private final RetentionService retentionService;
+    private final ConversionCache conversionCache;
+    private final FrenchTerminologyService terminologyService;
 
     /**
      * Point d'entrée pour la conversion HL7 vers FHIR
+     * Selon l'en-tête Accept, renvoie la réponse enveloppe JSON (application/json, par défaut)
+     * ou directement le bundle en JSON compact ou indenté, XML, CBOR ou Smile.
+     * Dans tous les cas le bundle est encodé une seule fois, directement dans la réponse.
      */
     @PostMapping("/convert")
-    public ResponseEntity<Map<String, Object>> convertHl7ToFhir(@RequestBody Map<String, String> request) {
+    public void convertHl7ToFhir(@RequestBody Map<String, String> request,
+                                 @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                 HttpServletResponse response) throws IOException {
         String hl7Content = request.get("hl7");
         String filename = request.getOrDefault("filename", "direct_input_" + System.currentTimeMillis() + ".hl7");
+        Optional<FhirOutputFormat> fhirFormat = FhirOutputFormat.fromAcceptHeader(accept);
+        // Le corps de la réponse dépend de l'en-tête Accept (caches HTTP)
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
         
         if (hl7Content == null || hl7Content.trim().isEmpty()) {
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("success", false);
-            errorResponse.put("error", "Le contenu HL7 est requis");
-            return ResponseEntity.badRequest().body(errorResponse);
+            writeError("Le contenu HL7 est requis", HttpStatus.BAD_REQUEST, fhirFormat, response);
+            return;
         }
         
         // Convertir le message HL7
-        Map<String, Object> result = converter.convertHl7ToFhir(hl7Content);
+        ConversionResult result = converter.convertHl7ToFhir(hl7Content, "API");
         
         // Enregistrer le log de conversion
-        Boolean success = (Boolean) result.get("success");
-        ConversionLog conversionLog = ConversionLog.builder()
-                .inputFile(filename)
-                .outputFile(success != null && success ? filename.replaceAll("\\.[^.]+$", ".json") : null)
-                .success(success != null && success)
-                .message(success != null && success ? "Conversion réussie" : "Erreur: " + result.get("error"))
-                .sourceType("API")
-                .messageType((String) result.get("messageType"))
-                .build();
-        
-        if (result.get("resourceCount") != null) {
-            conversionLog.setFhirResourceCount(result.get("resourceCount").toString());
-        }
-        
-        ConversionLog savedLog = logService.logConversion(conversionLog);
-        
-        // Ajouter l'ID du log à la réponse
-        result.put("logId", savedLog.getId());
+        ConversionLog savedLog = logConversion(result, filename, "API");
         
-        return ResponseEntity.ok(result);
+        writeConversion(result, savedLog.getId(), fhirFormat, response);
     }
     
     /**
      * Télécharger et convertir un fichier HL7
      */
     @PostMapping("/upload")
-    public ResponseEntity<Map<String, Object>> uploadAndConvert(@RequestParam("file") MultipartFile file) {
-        Map<String, Object> response = new HashMap<>();
+    public void uploadAndConvert(@RequestParam("file") MultipartFile file,
+                                 @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                 HttpServletResponse response) throws IOException {
+        Optional<FhirOutputFormat> fhirFormat = FhirOutputFormat.fromAcceptHeader(accept);
+        // Le corps de la réponse dépend de l'en-tête Accept (caches HTTP)
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
         
         if (file.isEmpty()) {
-            response.put("success", false);
-            response.put("error", "Fichier vide");
-            return ResponseEntity.badRequest().body(response);
+            writeError("Fichier vide", HttpStatus.BAD_REQUEST, fhirFormat, response);
+            return;
         }
         
+        String hl7Content;
         try {
             // Lire le contenu du fichier
-            String hl7Content = new String(file.getBytes(), StandardCharsets.UTF_8);
-            String filename = file.getOriginalFilename();
-            
-            // Convertir le message HL7
-            Map<String, Object> result = converter.convertHl7ToFhir(hl7Content);
-            
-            // Enregistrer le log de conversion
-            Boolean success = (Boolean) result.get("success");
-            ConversionLog conversionLog = ConversionLog.builder()
-                    .inputFile(filename)
-                    .outputFile(success != null && success ? filename.replaceAll("\\.[^.]+$", ".json") : null)
-                    .success(success != null && success)
-                    .message(success != null && success ? "Conversion réussie" : "Erreur: " + result.get("error"))
-                    .sourceType("UPLOAD")
-                    .messageType((String) result.get("messageType"))
-                    .build();
-            
-            if (result.get("resourceCount") != null) {
-                conversionLog.setFhirResourceCount(result.get("resourceCount").toString());
-            }
-            
-            ConversionLog savedLog = logService.logConversion(conversionLog);
-            
-            // Ajouter l'ID du log à la réponse
-            result.put("logId", savedLog.getId());
-            
-            return ResponseEntity.ok(result);
+            hl7Content = new String(file.getBytes(), StandardCharsets.UTF_8);
         } catch (IOException e) {
             log.error("Erreur lors de la lecture du fichier", e);
-            response.put("success", false);
-            response.put("error", "Erreur lors de la lecture du fichier: " + e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+            writeError("Erreur lors de la lecture du fichier: " + e.getMessage(),
+                HttpStatus.INTERNAL_SERVER_ERROR, fhirFormat, response);
+            return;
         }
+        
+        // Convertir le message HL7
+        ConversionResult result = converter.convertHl7ToFhir(hl7Content, "UPLOAD");
+        
+        // Enregistrer le log de conversion
+        ConversionLog savedLog = logConversion(result, file.getOriginalFilename(), "UPLOAD");
+        
+        writeConversion(result, savedLog.getId(), fhirFormat, response);
+    }
+    
+    /**
+     * Convertir un fichier batch HL7 (enveloppes FHS/BHS, plusieurs messages MSH)
+     * Le corps de la requête est lu au fil de l'eau et chaque bundle est renvoyé
+     * dès sa conversion, une ressource par ligne (NDJSON)
+     */
+    @PostMapping(value = "/convert/batch", produces = "application/x-ndjson")
+    public void convertBatch(@RequestParam(value = "filename", required = false) String filename,
+                             HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        String sourceName = filename != null ? filename : "batch_" + System.currentTimeMillis() + ".hl7";
+        
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        
+        batchConversionService.convertBatch(request.getInputStream(), response.getOutputStream(), sourceName);
     }
     
     /**
      * Obtenir l'historique des conversions
+     * Avec le paramètre cursor (vide pour la première page), la pagination se fait
+     * par clé (timestamp, id) : coût constant quelle que soit la profondeur, sans
+     * COUNT(*) ; le total renvoyé est une estimation issue des statistiques.
      */
     @GetMapping("/conversions")
     public ResponseEntity<Map<String, Object>> getConversions(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String cursor) {
+        
+        if (cursor != null) {
+            return getConversionsAfter(cursor, size);
+        }
         
         Page<ConversionLog> conversions = logService.getConversions(page, size);
         
@@ -140,6 +171,28 @@ public class ApiController {
         return ResponseEntity.ok(response);
     }
     
+    private ResponseEntity<Map<String, Object>> getConversionsAfter(String cursor, int size) {
+        Map<String, Object> response = new HashMap<>();
+        
+        Slice<ConversionLog> conversions;
+        try {
+            conversions = logService.getConversionsAfter(cursor, Math.max(1, Math.min(size, MAX_KEYSET_PAGE_SIZE)));
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        List<ConversionLog> content = conversions.getContent();
+        response.put("success", true);
+        response.put("data", content);
+        response.put("hasMore", conversions.hasNext());
+        response.put("nextCursor", conversions.hasNext() ? ConversionCursor.encode(content.get(content.size() - 1)) : null);
+        response.put("estimatedTotal", logService.getEstimatedTotal());
+        
+        return ResponseEntity.ok(response);
+    }
+    
     /**
      * Obtenir un log de conversion spécifique
      */
@@ -174,6 +227,171 @@ public class ApiController {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * Obtenir les statistiques journalières (30 derniers jours par défaut)
+     * Les jours échus sont lus dans les agrégats de la rétention
+     */
+    @GetMapping("/stats/daily")
+    public ResponseEntity<Map<String, Object>> getDailyStats(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(29);
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", retentionService.getDailyStats(start, end));
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Enregistrer le log d'une conversion effectuée via l'API
+     */
+    private ConversionLog logConversion(ConversionResult result, String filename, String sourceType) {
+        ConversionLog conversionLog = ConversionLog.builder()
+                .inputFile(filename)
+                .outputFile(result.isSuccess() ? filename.replaceAll("\\.[^.]+$", ".json") : null)
+                .success(result.isSuccess())
+                .message(result.isSuccess() ? "Conversion réussie" : "Erreur: " + result.getError())
+                .sourceType(sourceType)
+                .messageType(result.getMessageType())
+                .build();
+        
+        if (result.isSuccess()) {
+            conversionLog.setFhirResourceCount(Integer.toString(result.getResourceCount()));
+        }
+        
+        return logService.logConversion(conversionLog);
+    }
+    
+    /**
+     * Écrire le résultat d'une conversion : enveloppe JSON, ou ressource FHIR brute
+     * (le bundle, ou un OperationOutcome en cas d'échec) dans le format négocié
+     */
+    private void writeConversion(ConversionResult result, Long logId, Optional<FhirOutputFormat> fhirFormat,
+                                 HttpServletResponse response) throws IOException {
+        if (fhirFormat.isPresent()) {
+            response.setHeader("X-Conversion-Log-Id", String.valueOf(logId));
+            if (result.isSuccess()) {
+                writeFhir(result, fhirFormat.get(), response);
+            } else {
+                writeFhir(operationOutcome("Erreur: " + result.getError()), fhirFormat.get(),
+                    HttpStatus.UNPROCESSABLE_ENTITY, response);
+            }
+            return;
+        }
+        
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        responseWriter.writeEnvelope(result, logId, response.getOutputStream());
+    }
+    
+    /**
+     * Écrire une erreur de requête dans le format négocié
+     */
+    private void writeError(String error, HttpStatus status, Optional<FhirOutputFormat> fhirFormat,
+                            HttpServletResponse response) throws IOException {
+        if (fhirFormat.isPresent()) {
+            writeFhir(operationOutcome(error), fhirFormat.get(), status, response);
+            return;
+        }
+        
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        responseWriter.writeError(error, response.getOutputStream());
+    }
+    
+    /**
+     * Encoder le bundle d'une conversion réussie directement dans la réponse
+     */
+    private void writeFhir(ConversionResult result, FhirOutputFormat format,
+                           HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(format.getMediaType());
+        if (!format.isBinary()) {
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        }
+        outputEncoder.encode(result, format, response.getOutputStream());
+    }
+    
+    /**
+     * Encoder une ressource FHIR directement dans la réponse
+     */
+    private void writeFhir(IBaseResource resource, FhirOutputFormat format, HttpStatus status,
+                           HttpServletResponse response) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(format.getMediaType());
+        if (!format.isBinary()) {
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        }
+        outputEncoder.encode(resource, format, response.getOutputStream());
+    }
+    
+    /**
+     * Construire un OperationOutcome d'erreur
+     */
+    private OperationOutcome operationOutcome(String diagnostics) {
+        OperationOutcome outcome = new OperationOutcome();
+        outcome.addIssue()
+                .setSeverity(OperationOutcome.IssueSeverity.ERROR)
+                .setCode(OperationOutcome.IssueType.PROCESSING)
+                .setDiagnostics(diagnostics);
+        return outcome;
+    }
+    
+    /**
+     * Obtenir l'état de la surveillance de fichiers (mode, file d'attente, workers)
+     */
+    @GetMapping("/monitoring/status")
+    public ResponseEntity<Map<String, Object>> getMonitoringStatus() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", fileMonitorService.getStatus());
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Obtenir les statistiques du cache des conversions (succès, échecs, évictions)
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", conversionCache.getStats());
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Obtenir l'état des tables de terminologie française
+     */
+    @GetMapping("/terminology/status")
+    public ResponseEntity<Map<String, Object>> getTerminologyStatus() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", terminologyService.getStatus());
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Recharger les fichiers de terminologie française sans redémarrage
+     */
+    @PostMapping("/terminology/reload")
+    public ResponseEntity<Map<String, Object>> reloadTerminology() {
+        Map<String, Object> response = new HashMap<>();
+        if (!terminologyService.reload()) {
+            response.put("success", false);
+            response.put("error", "Échec du rechargement de la terminologie, tables précédentes conservées");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+        response.put("success", true);
+        response.put("data", terminologyService.getStatus());
+        return ResponseEntity.ok(response);
+    }
+    
     /**
      * Vérifier l'état de l'API
      */
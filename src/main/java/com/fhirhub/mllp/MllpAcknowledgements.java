@@ -0,0 +1,124 @@
+package com.fhirhub.mllp;
+
+import com.fhirhub.service.Er7SegmentIndex;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Construction des accusés de réception HL7 (ACK) renvoyés sur MLLP
+ * 
+ * L'ACK est construit à partir du segment MSH brut du message reçu, sans
+ * parsing HAPI : émetteur et destinataire inversés, mêmes séparateurs,
+ * même version, et MSA-2 reprenant l'identifiant du message (MSH-10).
+ */
+public final class MllpAcknowledgements {
+
+    /** Message accepté */
+    public static final String APPLICATION_ACCEPT = "AA";
+    /** Message valide mais conversion impossible */
+    public static final String APPLICATION_ERROR = "AE";
+    /** Message rejeté (pas un message HL7 exploitable) */
+    public static final String APPLICATION_REJECT = "AR";
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final int MAX_TEXT_LENGTH = 80;
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private MllpAcknowledgements() {
+    }
+
+    public static String accept(String message) {
+        return build(message, APPLICATION_ACCEPT, null);
+    }
+
+    public static String error(String message, String text) {
+        return build(message, APPLICATION_ERROR, text);
+    }
+
+    public static String reject(String message, String text) {
+        return build(message, APPLICATION_REJECT, text);
+    }
+
+    /**
+     * Construire un ACK
+     * @param text Message d'erreur (MSA-3), null pour un ACK positif
+     */
+    static String build(String message, String code, String text) {
+        Er7SegmentIndex index = Er7SegmentIndex.of(message);
+        boolean hasMsh = message.startsWith("MSH") && message.length() > 8;
+        
+        char fieldSeparator = hasMsh ? message.charAt(3) : '|';
+        String encodingCharacters = hasMsh ? orDefault(index.mshField(2), "^~\\&") : "^~\\&";
+        char componentSeparator = encodingCharacters.charAt(0);
+        
+        String triggerEvent = component(index.mshField(9), componentSeparator, 1);
+        
+        StringBuilder ack = new StringBuilder(256);
+        ack.append("MSH").append(fieldSeparator).append(encodingCharacters)
+            .append(fieldSeparator).append(orDefault(index.mshField(5), ""))
+            .append(fieldSeparator).append(orDefault(index.mshField(6), ""))
+            .append(fieldSeparator).append(orDefault(index.mshField(3), ""))
+            .append(fieldSeparator).append(orDefault(index.mshField(4), ""))
+            .append(fieldSeparator).append(LocalDateTime.now().format(TIMESTAMP))
+            .append(fieldSeparator)
+            .append(fieldSeparator).append("ACK");
+        if (triggerEvent != null) {
+            ack.append(componentSeparator).append(triggerEvent)
+                .append(componentSeparator).append("ACK");
+        }
+        ack.append(fieldSeparator).append(nextControlId())
+            .append(fieldSeparator).append(orDefault(index.mshField(11), "P"))
+            .append(fieldSeparator).append(orDefault(index.mshField(12), "2.5"))
+            .append('\r');
+        
+        ack.append("MSA").append(fieldSeparator).append(code)
+            .append(fieldSeparator).append(orDefault(index.mshField(10), ""));
+        if (text != null) {
+            ack.append(fieldSeparator).append(sanitize(text, fieldSeparator, encodingCharacters));
+        }
+        ack.append('\r');
+        return ack.toString();
+    }
+
+    /**
+     * Identifiant de l'ACK (MSH-10, 20 caractères max)
+     */
+    private static String nextControlId() {
+        return "ACK" + Long.toString(System.currentTimeMillis(), 36) + Long.toString(SEQUENCE.incrementAndGet() % 46656, 36);
+    }
+
+    private static String component(String field, char separator, int index) {
+        if (field == null) {
+            return null;
+        }
+        int start = 0;
+        for (int i = 0; i < index; i++) {
+            start = field.indexOf(separator, start) + 1;
+            if (start == 0) {
+                return null;
+            }
+        }
+        int end = field.indexOf(separator, start);
+        String value = end < 0 ? field.substring(start) : field.substring(start, end);
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Retirer les séparateurs et fins de ligne d'un texte libre, tronqué à la taille de MSA-3
+     */
+    private static String sanitize(String text, char fieldSeparator, String encodingCharacters) {
+        StringBuilder sanitized = new StringBuilder(Math.min(text.length(), MAX_TEXT_LENGTH));
+        for (int i = 0; i < text.length() && sanitized.length() < MAX_TEXT_LENGTH; i++) {
+            char c = text.charAt(i);
+            boolean reserved = c == fieldSeparator || encodingCharacters.indexOf(c) >= 0 || c == '\r' || c == '\n';
+            sanitized.append(reserved ? ' ' : c);
+        }
+        return sanitized.toString();
+    }
+
+    private static String orDefault(String value, String defaultValue) {
+        return value != null ? value : defaultValue;
+    }
+}
@@ -0,0 +1,107 @@
+package com.fhirhub.mllp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Client MLLP bloquant, pour tester localement le serveur ou rejouer un flux
+ * Les messages peuvent être envoyés en rafale (pipelining) : les ACK sont
+ * lus ensuite, dans l'ordre d'envoi.
+ */
+public class MllpClient implements Closeable {
+
+    private static final int MAX_ACK_LENGTH = 64 * 1024;
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final Charset charset;
+    private final MllpFrameDecoder decoder = new MllpFrameDecoder(MAX_ACK_LENGTH);
+    private final Deque<String> received = new ArrayDeque<>();
+
+    public MllpClient(String host, int port) throws IOException {
+        this(host, port, StandardCharsets.UTF_8, 30_000);
+    }
+
+    /**
+     * @param timeoutMs Délai maximal d'attente d'un ACK
+     */
+    public MllpClient(String host, int port, Charset charset, int timeoutMs) throws IOException {
+        this.socket = new Socket();
+        this.socket.connect(new InetSocketAddress(host, port), timeoutMs);
+        this.socket.setSoTimeout(timeoutMs);
+        this.socket.setTcpNoDelay(true);
+        this.in = socket.getInputStream();
+        this.out = socket.getOutputStream();
+        this.charset = charset;
+    }
+
+    /**
+     * Envoyer un message et attendre son ACK
+     */
+    public String send(String message) throws IOException {
+        write(message);
+        return readAck();
+    }
+
+    /**
+     * Envoyer tous les messages sans attendre, puis lire leurs ACK
+     */
+    public List<String> sendPipelined(List<String> messages) throws IOException {
+        for (String message : messages) {
+            write(message);
+        }
+        List<String> acks = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            acks.add(readAck());
+        }
+        return acks;
+    }
+
+    /**
+     * Envoyer un message sans attendre son ACK
+     */
+    public void write(String message) throws IOException {
+        ByteBuffer frame = MllpFrameDecoder.frame(message, charset);
+        out.write(frame.array(), 0, frame.limit());
+        out.flush();
+    }
+
+    /**
+     * Lire le prochain ACK
+     */
+    public String readAck() throws IOException {
+        while (received.isEmpty()) {
+            ByteBuffer buffer = decoder.buffer();
+            int read;
+            try {
+                read = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            } catch (SocketTimeoutException e) {
+                throw new IOException("Pas d'ACK reçu dans le délai imparti", e);
+            }
+            if (read < 0) {
+                throw new IOException("Connexion fermée par le serveur avant l'ACK");
+            }
+            buffer.position(buffer.position() + read);
+            decoder.decode(payload -> received.addLast(charset.decode(payload).toString()), Integer.MAX_VALUE);
+        }
+        return received.pollFirst();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
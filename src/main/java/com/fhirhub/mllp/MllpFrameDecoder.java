@@ -0,0 +1,138 @@
+package com.fhirhub.mllp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Découpage d'un flux MLLP en messages : 0x0B message 0x1C 0x0D
+ * 
+ * Les octets lus sur la socket arrivent directement dans le tampon du
+ * décodeur ; chaque message complet est présenté comme une tranche de ce
+ * tampon (aucune copie), puis seul le message incomplet éventuel est ramené
+ * en tête de tampon. Le tampon grandit jusqu'à la taille maximale d'un message.
+ */
+public final class MllpFrameDecoder {
+
+    public static final byte START_BLOCK = 0x0B;
+    public static final byte END_BLOCK = 0x1C;
+    public static final byte CARRIAGE_RETURN = 0x0D;
+
+    private static final int INITIAL_CAPACITY = 16 * 1024;
+
+    /**
+     * Reçoit la charge utile d'un message complet (valide pendant l'appel seulement)
+     */
+    @FunctionalInterface
+    public interface FrameHandler {
+        void onFrame(ByteBuffer payload);
+    }
+
+    private final int maxMessageLength;
+    private ByteBuffer buffer;
+    
+    // Position (en mode lecture) du bloc de début du message en cours, -1 si aucun
+    private int frameStart = -1;
+    // Position jusqu'à laquelle le message en cours a déjà été parcouru
+    private int scanned;
+
+    public MllpFrameDecoder(int maxMessageLength) {
+        this.maxMessageLength = maxMessageLength;
+        this.buffer = ByteBuffer.allocate(Math.min(INITIAL_CAPACITY, maxMessageLength + 3));
+    }
+
+    /**
+     * Tampon dans lequel lire la suite du flux (en mode écriture)
+     */
+    public ByteBuffer buffer() {
+        if (!buffer.hasRemaining()) {
+            if (buffer.capacity() >= maxMessageLength + 3) {
+                throw new MllpProtocolException("Message MLLP trop long (max " + maxMessageLength + " octets)");
+            }
+            ByteBuffer larger = ByteBuffer.allocate(Math.min(buffer.capacity() * 2, maxMessageLength + 3));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+        return buffer;
+    }
+
+    /**
+     * Indique si des octets lus n'ont pas encore été découpés
+     */
+    public boolean hasBufferedData() {
+        return buffer.position() > 0;
+    }
+
+    /**
+     * Présenter au plus maxFrames messages complets au gestionnaire
+     * @return Nombre de messages présentés
+     */
+    public int decode(FrameHandler handler, int maxFrames) {
+        buffer.flip();
+        int limit = buffer.limit();
+        int position = frameStart >= 0 ? frameStart + scanned : 0;
+        int consumed = 0;
+        int frames = 0;
+        
+        while (position < limit && frames < maxFrames) {
+            byte current = buffer.get(position);
+            
+            if (frameStart < 0) {
+                // Octets hors message ignorés jusqu'au prochain bloc de début
+                if (current == START_BLOCK) {
+                    frameStart = position;
+                }
+                position++;
+                if (frameStart < 0) {
+                    consumed = position;
+                }
+                continue;
+            }
+            
+            if (current == END_BLOCK) {
+                if (position + 1 >= limit) {
+                    // Retour chariot final pas encore reçu
+                    break;
+                }
+                if (buffer.get(position + 1) == CARRIAGE_RETURN) {
+                    ByteBuffer payload = buffer.duplicate();
+                    payload.limit(position).position(frameStart + 1);
+                    handler.onFrame(payload.slice());
+                    frames++;
+                    position += 2;
+                    consumed = position;
+                    frameStart = -1;
+                    continue;
+                }
+            }
+            
+            position++;
+            if (position - frameStart - 1 > maxMessageLength) {
+                throw new MllpProtocolException("Message MLLP trop long (max " + maxMessageLength + " octets)");
+            }
+        }
+        
+        // Ne conserver que les octets non consommés, le message en cours en tête de tampon
+        if (frameStart >= 0) {
+            scanned = position - frameStart;
+            buffer.position(frameStart);
+            frameStart = 0;
+        } else {
+            scanned = 0;
+            buffer.position(consumed);
+        }
+        buffer.compact();
+        return frames;
+    }
+
+    /**
+     * Encadrer un message pour l'envoi
+     */
+    public static ByteBuffer frame(String message, Charset charset) {
+        byte[] payload = message.getBytes(charset);
+        ByteBuffer framed = ByteBuffer.allocate(payload.length + 3);
+        framed.put(START_BLOCK).put(payload).put(END_BLOCK).put(CARRIAGE_RETURN);
+        framed.flip();
+        return framed;
+    }
+}
@@ -0,0 +1,115 @@
+package com.fhirhub.mllp;
+
+import com.fhirhub.model.ConversionLog;
+import com.fhirhub.model.ConversionResult;
+import com.fhirhub.service.ConversionLogService;
+import com.fhirhub.service.Er7SegmentIndex;
+import com.fhirhub.service.FhirOutputEncoder;
+import com.fhirhub.service.Hl7ToFhirConverter;
+import com.fhirhub.service.OutputFileWriter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Traitement d'un message reçu sur MLLP : conversion, log, fichier de sortie
+ * L'ACK n'est renvoyé qu'une fois le fichier de sortie écrit (et durable
+ * selon fhirhub.output.fsync) ; en cas d'échec un NAK (AE ou AR) est renvoyé.
+ * Le fichier de sortie est nommé d'après MSH-3, MSH-4 et MSH-10 : un message
+ * retransmis par le même émetteur remplace sa sortie, deux émetteurs utilisant
+ * le même identifiant ne s'écrasent pas.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MllpMessageProcessor {
+
+    static final String SOURCE_TYPE = "MLLP";
+    private static final int MAX_NAME_PART_LENGTH = 64;
+
+    private final Hl7ToFhirConverter converter;
+    private final ConversionLogService logService;
+    private final FhirOutputEncoder outputEncoder;
+    private final OutputFileWriter outputFileWriter;
+    
+    @Value("${fhirhub.mllp.write-output:true}")
+    private boolean writeOutput;
+
+    /**
+     * Traiter un message et produire l'accusé de réception
+     */
+    public CompletableFuture<String> process(String message) {
+        Er7SegmentIndex index = Er7SegmentIndex.of(message);
+        if (index.messageKey() == null) {
+            return CompletableFuture.completedFuture(
+                MllpAcknowledgements.reject(message, "Message HL7 sans MSH-9"));
+        }
+        
+        String inputName = inputName(index);
+        String outputName = inputName + ".json";
+        
+        ConversionResult result = converter.convertHl7ToFhir(message, SOURCE_TYPE);
+        
+        ConversionLog conversionLog = ConversionLog.builder()
+            .inputFile(inputName)
+            .outputFile(result.isSuccess() && writeOutput ? outputName : null)
+            .success(result.isSuccess())
+            .message(result.isSuccess() ? "Conversion réussie" : "Erreur: " + result.getError())
+            .messageType(result.getMessageType())
+            .sourceType(SOURCE_TYPE)
+            .build();
+        if (result.isSuccess()) {
+            conversionLog.setFhirResourceCount(Integer.toString(result.getResourceCount()));
+        }
+        logService.logConversion(conversionLog);
+        
+        if (!result.isSuccess()) {
+            return CompletableFuture.completedFuture(MllpAcknowledgements.error(message, result.getError()));
+        }
+        if (!writeOutput) {
+            return CompletableFuture.completedFuture(MllpAcknowledgements.accept(message));
+        }
+        
+        try {
+            return outputFileWriter
+                .write(outputName, out -> outputEncoder.encode(result, outputEncoder.getDefaultFormat(), out))
+                .handle((path, error) -> {
+                    if (error != null) {
+                        log.error("Écriture du fichier de sortie MLLP impossible: {}", outputName, error);
+                        return MllpAcknowledgements.error(message, "Écriture de la sortie impossible");
+                    }
+                    return MllpAcknowledgements.accept(message);
+                });
+        } catch (Exception e) {
+            log.error("Écriture du fichier de sortie MLLP impossible: {}", outputName, e);
+            return CompletableFuture.completedFuture(
+                MllpAcknowledgements.error(message, "Écriture de la sortie impossible"));
+        }
+    }
+
+    /**
+     * Nom unique par émetteur : mllp_<MSH-3>_<MSH-4>_<MSH-10>
+     * Sans MSH-10, un suffixe aléatoire évite d'écraser une autre sortie
+     */
+    static String inputName(Er7SegmentIndex index) {
+        String controlId = index.mshField(10);
+        return "mllp_" + namePart(index.mshField(3))
+            + "_" + namePart(index.mshField(4))
+            + "_" + (controlId != null && !controlId.isEmpty() ? namePart(controlId) : UUID.randomUUID().toString());
+    }
+
+    /**
+     * Le caractère _ est réservé au séparateur : deux triplets différents ne donnent pas le même nom
+     */
+    private static String namePart(String value) {
+        if (value == null || value.isEmpty()) {
+            return "-";
+        }
+        String safe = value.replaceAll("[^A-Za-z0-9.-]", "-");
+        return safe.length() > MAX_NAME_PART_LENGTH ? safe.substring(0, MAX_NAME_PART_LENGTH) : safe;
+    }
+}
@@ -0,0 +1,11 @@
+package com.fhirhub.mllp;
+
+/**
+ * Flux MLLP invalide (message trop long) : la connexion est fermée
+ */
+public class MllpProtocolException extends RuntimeException {
+
+    public MllpProtocolException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,369 @@
+package com.fhirhub.mllp;
+
+import com.fhirhub.config.ThreadFactories;
+import com.fhirhub.service.ConversionMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serveur MLLP non bloquant pour les flux HL7 temps réel
+ *
+ * Un seul thread (sélecteur NIO) accepte les connexions, lit et découpe les
+ * messages et écrit les accusés de réception ; les conversions s'exécutent
+ * sur un pool de workers. Une connexion peut envoyer plusieurs messages sans
+ * attendre leur ACK, dans la limite de max-pipelined : au-delà, la lecture de
+ * la connexion est suspendue. Les ACK sont toujours renvoyés dans l'ordre des
+ * messages. Au-delà de max-connections, les nouvelles connexions sont fermées.
+ */
+@Component
+@Slf4j
+public class MllpServer {
+
+    private final MllpMessageProcessor processor;
+    private final boolean enabled;
+    private final String bindAddress;
+    private final int port;
+    private final int maxConnections;
+    private final int maxPipelined;
+    private final int maxMessageLength;
+    private final int workerCount;
+    private final Charset charset;
+
+    // Connexions dont au moins un ACK est prêt (remplie par les workers)
+    private final Queue<Connection> completions = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private ExecutorService workers;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    public MllpServer(MllpMessageProcessor processor,
+                      ConversionMetrics metrics,
+                      @Value("${fhirhub.mllp.enabled:false}") boolean enabled,
+                      @Value("${fhirhub.mllp.bind-address:0.0.0.0}") String bindAddress,
+                      @Value("${fhirhub.mllp.port:2575}") int port,
+                      @Value("${fhirhub.mllp.max-connections:100}") int maxConnections,
+                      @Value("${fhirhub.mllp.max-pipelined:8}") int maxPipelined,
+                      @Value("${fhirhub.mllp.max-message-length:1048576}") int maxMessageLength,
+                      @Value("${fhirhub.mllp.workers:4}") int workerCount,
+                      @Value("${fhirhub.mllp.charset:UTF-8}") String charset) {
+        this.processor = processor;
+        this.enabled = enabled;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.maxConnections = Math.max(1, maxConnections);
+        this.maxPipelined = Math.max(1, maxPipelined);
+        this.maxMessageLength = Math.max(1, maxMessageLength);
+        this.workerCount = Math.max(1, workerCount);
+        this.charset = Charset.forName(charset);
+
+        metrics.gauge("fhirhub.mllp.connections", "Connexions MLLP ouvertes", connectionCount, AtomicInteger::get);
+    }
+
+    /**
+     * Ouvrir le port d'écoute et démarrer le thread du sélecteur
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            log.info("Serveur MLLP désactivé");
+            return;
+        }
+
+        workers = Executors.newFixedThreadPool(workerCount, ThreadFactories.create("fhirhub-mllp-worker", false));
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(bindAddress, port));
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        selectorThread = new Thread(this::run, "fhirhub-mllp");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+
+        log.info("Serveur MLLP à l'écoute sur {}:{} ({} connexion(s) max, {} message(s) en attente d'ACK par connexion)",
+            bindAddress, getLocalPort(), maxConnections, maxPipelined);
+    }
+
+    /**
+     * Fermer le port d'écoute et les connexions
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        selectorThread.join(TimeUnit.SECONDS.toMillis(10));
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Port effectivement écouté (utile avec fhirhub.mllp.port=0)
+     */
+    public int getLocalPort() {
+        return serverChannel != null ? serverChannel.socket().getLocalPort() : -1;
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                selector.select();
+                drainCompletions();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(connection);
+                            updateInterest(connection);
+                        }
+                    } catch (IOException | MllpProtocolException e) {
+                        log.warn("Connexion MLLP {} fermée: {}", connection.remote, e.getMessage());
+                        close(connection);
+                    }
+                }
+            } catch (IOException e) {
+                log.error("Erreur du sélecteur MLLP", e);
+            }
+        }
+
+        closeAll();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+
+        if (connectionCount.get() >= maxConnections) {
+            log.warn("Connexion MLLP refusée depuis {}: limite de {} connexion(s) atteinte",
+                channel.getRemoteAddress(), maxConnections);
+            channel.close();
+            return;
+        }
+
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        Connection connection = new Connection(channel, key, String.valueOf(channel.getRemoteAddress()));
+        key.attach(connection);
+        connectionCount.incrementAndGet();
+        log.debug("Connexion MLLP ouverte: {}", connection.remote);
+    }
+
+    private void read(Connection connection) throws IOException {
+        int read = connection.channel.read(connection.decoder.buffer());
+        if (read < 0) {
+            // Fin d'émission : les ACK en attente sont encore envoyés
+            connection.inputClosed = true;
+        }
+        decodeFrames(connection);
+        updateInterest(connection);
+    }
+
+    /**
+     * Transmettre aux workers les messages complets, dans la limite des places libres
+     */
+    private void decodeFrames(Connection connection) {
+        int slots = maxPipelined - connection.outstanding();
+        if (slots > 0 && connection.decoder.hasBufferedData()) {
+            connection.decoder.decode(payload -> dispatch(connection, payload), slots);
+        }
+    }
+
+    private void dispatch(Connection connection, ByteBuffer payload) {
+        // Seule copie du message : le décodage en texte pour le convertisseur
+        String message = charset.decode(payload).toString();
+        PendingAck pending = new PendingAck();
+        connection.pending.addLast(pending);
+
+        try {
+            CompletableFuture.supplyAsync(() -> processor.process(message), workers)
+                .thenCompose(ack -> ack)
+                .whenComplete((ack, error) -> {
+                    String response = ack;
+                    if (error != null) {
+                        log.error("Erreur lors du traitement d'un message MLLP", error);
+                        response = MllpAcknowledgements.error(message, "Erreur interne");
+                    }
+                    pending.response = MllpFrameDecoder.frame(response, charset);
+                    completions.add(connection);
+                    selector.wakeup();
+                });
+        } catch (RejectedExecutionException e) {
+            // Arrêt en cours
+            pending.response = MllpFrameDecoder.frame(MllpAcknowledgements.error(message, "Serveur en cours d'arrêt"), charset);
+            completions.add(connection);
+        }
+    }
+
+    /**
+     * Envoyer les ACK prêts, dans l'ordre des messages, puis reprendre la lecture
+     */
+    private void drainCompletions() {
+        Connection connection;
+        while ((connection = completions.poll()) != null) {
+            if (!connection.open) {
+                continue;
+            }
+            try {
+                while (!connection.pending.isEmpty() && connection.pending.peekFirst().response != null) {
+                    connection.output.addLast(connection.pending.pollFirst().response);
+                }
+                write(connection);
+                decodeFrames(connection);
+                updateInterest(connection);
+            } catch (IOException | MllpProtocolException e) {
+                log.warn("Connexion MLLP {} fermée: {}", connection.remote, e.getMessage());
+                close(connection);
+            }
+        }
+    }
+
+    private void write(Connection connection) throws IOException {
+        while (!connection.output.isEmpty()) {
+            ByteBuffer response = connection.output.peekFirst();
+            connection.channel.write(response);
+            if (response.hasRemaining()) {
+                return;
+            }
+            connection.output.pollFirst();
+        }
+    }
+
+    private void updateInterest(Connection connection) {
+        if (!connection.open) {
+            return;
+        }
+        if (connection.inputClosed && connection.outstanding() == 0) {
+            close(connection);
+            return;
+        }
+
+        int ops = 0;
+        if (!connection.inputClosed && connection.outstanding() < maxPipelined) {
+            ops |= SelectionKey.OP_READ;
+        }
+        if (!connection.output.isEmpty()) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        connection.key.interestOps(ops);
+    }
+
+    private void close(Connection connection) {
+        if (!connection.open) {
+            return;
+        }
+        connection.open = false;
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            log.debug("Erreur à la fermeture de la connexion MLLP {}: {}", connection.remote, e.getMessage());
+        }
+        connectionCount.decrementAndGet();
+        log.debug("Connexion MLLP fermée: {}", connection.remote);
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection) {
+                close((Connection) key.attachment());
+            }
+        }
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            log.warn("Erreur à l'arrêt du serveur MLLP: {}", e.getMessage());
+        }
+        log.info("Serveur MLLP arrêté");
+    }
+
+    /**
+     * État d'une connexion, manipulé uniquement par le thread du sélecteur
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final String remote;
+        private final MllpFrameDecoder decoder = new MllpFrameDecoder(maxMessageLength);
+
+        // Messages transmis aux workers, dans l'ordre de réception
+        private final Deque<PendingAck> pending = new ArrayDeque<>();
+        // ACK encadrés prêts à être écrits
+        private final Deque<ByteBuffer> output = new ArrayDeque<>();
+
+        private boolean inputClosed;
+        private boolean open = true;
+
+        private Connection(SocketChannel channel, SelectionKey key, String remote) {
+            this.channel = channel;
+            this.key = key;
+            this.remote = remote;
+        }
+
+        /**
+         * Messages reçus dont l'ACK n'est pas encore entièrement envoyé
+         */
+        private int outstanding() {
+            return pending.size() + output.size();
+        }
+    }
+
+    /**
+     * ACK d'un message, renseigné par le worker
+     */
+    private static final class PendingAck {
+        private volatile ByteBuffer response;
+    }
+}
@@ -45,7 +45,7 @@ public class ConversionLog {
     private String fhirResourceCount;
     
     @Column(nullable = false, length = 50)
-    private String sourceType;  // API, FILE, UPLOAD
+    private String sourceType;  // API, FILE, UPLOAD, BATCH
     
     @Column(nullable = false)
     @Builder.Default
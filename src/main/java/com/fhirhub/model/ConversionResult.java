@@ -0,0 +1,47 @@
+package com.fhirhub.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hl7.fhir.r4.model.Bundle;
+
+/**
+ * Résultat d'une conversion HL7 vers FHIR
+ * Le bundle n'est pas encodé ici : chaque appelant l'encode une seule fois,
+ * directement vers sa destination (réponse HTTP, fichier, flux NDJSON).
+ * Un résultat servi par le cache de conversion ne porte que le bundle déjà
+ * encodé en JSON compact (encodedBundle) ; FhirOutputEncoder gère les deux cas.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversionResult {
+
+    private boolean success;
+    
+    private String messageType;
+    
+    // Origine de la conversion (API, UPLOAD, FILE, BATCH), pour les métriques
+    private String sourceType;
+    
+    private int resourceCount;
+    
+    private Bundle bundle;
+    
+    private byte[] encodedBundle;
+    
+    private String error;
+
+    /**
+     * Construire un résultat d'échec
+     */
+    public static ConversionResult failure(String messageType, String error) {
+        return ConversionResult.builder()
+                .success(false)
+                .messageType(messageType)
+                .error(error)
+                .build();
+    }
+}
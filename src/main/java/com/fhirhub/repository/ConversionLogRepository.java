@@ -58,4 +58,23 @@ public interface ConversionLogRepository extends JpaRepository<ConversionLog, Lo
      * Récupérer les logs de conversion paginés par ordre chronologique inversé
      */
     Page<ConversionLog> findAllByOrderByTimestampDesc(Pageable pageable);
-}
\ No newline at end of file
+    
+    /**
+     * Première page de la pagination par clé, sans requête de comptage
+     */
+    List<ConversionLog> findByOrderByTimestampDescIdDesc(Pageable pageable);
+    
+    /**
+     * Page suivant le log (timestamp, id), dans l'ordre (timestamp DESC, id DESC)
+     * La borne timestamp <= :timestamp permet le parcours de l'index sur timestamp
+     */
+    @Query("SELECT c FROM ConversionLog c WHERE c.timestamp <= :timestamp "
+        + "AND (c.timestamp < :timestamp OR c.id < :id) ORDER BY c.timestamp DESC, c.id DESC")
+    List<ConversionLog> findPageAfter(LocalDateTime timestamp, Long id, Pageable pageable);
+    
+    /**
+     * Obtenir le plus grand ID attribué (base de l'allocation des IDs différés)
+     */
+    @Query("SELECT MAX(c.id) FROM ConversionLog c")
+    Long findMaxId();
+}
@@ -0,0 +1,133 @@
+package com.fhirhub.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Migrations du schéma SQLite non gérées par Hibernate
+ * 
+ * Le dialecte SQLite désactive ALTER TABLE : ddl-auto=update crée les tables
+ * mais pas les index ajoutés par la suite. Les migrations sont numérotées,
+ * appliquées une seule fois dans l'ordre et tracées dans schema_version.
+ * Elles tournent une fois l'application prête, pour ne pas retarder le
+ * démarrage pendant la construction des index sur une grosse table.
+ */
+@Component
+@Slf4j
+public class SchemaMigrator {
+
+    /**
+     * Migrations dans l'ordre d'application ; ne jamais modifier une migration publiée
+     */
+    static final List<Migration> MIGRATIONS = Arrays.asList(
+        new Migration(1, "Index sur timestamp (historique, fenêtre de 24h)",
+            "CREATE INDEX IF NOT EXISTS idx_conversion_logs_timestamp ON conversion_logs (timestamp)"),
+        new Migration(2, "Index sur (success, timestamp) (compteurs par statut)",
+            "CREATE INDEX IF NOT EXISTS idx_conversion_logs_success_timestamp ON conversion_logs (success, timestamp)"),
+        new Migration(3, "Index sur patient_id",
+            "CREATE INDEX IF NOT EXISTS idx_conversion_logs_patient_id ON conversion_logs (patient_id)"),
+        new Migration(4, "Index sur message_type",
+            "CREATE INDEX IF NOT EXISTS idx_conversion_logs_message_type ON conversion_logs (message_type)"),
+        new Migration(5, "Statistiques du planificateur",
+            "ANALYZE conversion_logs"),
+        new Migration(6, "Table des agrégats journaliers",
+            "CREATE TABLE IF NOT EXISTS conversion_daily_rollups ("
+            + "day VARCHAR NOT NULL, message_type VARCHAR NOT NULL, source_type VARCHAR NOT NULL, "
+            + "success INTEGER NOT NULL, count INTEGER NOT NULL, "
+            + "PRIMARY KEY (day, message_type, source_type, success))"),
+        // Le VACUUM qui applique le mode à une base existante est une tâche de
+        // maintenance à part (SqliteMaintenanceService) : sur une grosse table il
+        // bloquerait l'écrivain pendant toute sa durée
+        new Migration(7, "Vacuum incrémental",
+            "PRAGMA auto_vacuum = INCREMENTAL", false)
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public SchemaMigrator(@Qualifier("writeDataSource") DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        migrate();
+    }
+
+    /**
+     * Appliquer les migrations manquantes
+     * @return le nombre de migrations appliquées
+     */
+    public int migrate() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+            + "version INTEGER PRIMARY KEY, description VARCHAR NOT NULL, applied_at INTEGER NOT NULL)");
+        
+        Integer current = jdbcTemplate.queryForObject(
+            "SELECT COALESCE(MAX(version), 0) FROM schema_version", Integer.class);
+        int currentVersion = current != null ? current : 0;
+        
+        int applied = 0;
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version <= currentVersion) {
+                continue;
+            }
+            
+            long start = System.nanoTime();
+            if (migration.transactional) {
+                transactionTemplate.executeWithoutResult(status -> apply(migration));
+            } else {
+                apply(migration);
+            }
+            applied++;
+            
+            log.info("Migration {} appliquée en {} ms: {}", migration.version,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), migration.description);
+        }
+        
+        if (applied == 0) {
+            log.debug("Schéma à jour (version {})", currentVersion);
+        }
+        return applied;
+    }
+
+    private void apply(Migration migration) {
+        for (String statement : migration.sql.split(";")) {
+            jdbcTemplate.execute(statement.trim());
+        }
+        jdbcTemplate.update("INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)",
+            migration.version, migration.description, System.currentTimeMillis());
+    }
+
+    /**
+     * Migration numérotée ; plusieurs instructions sont séparées par des points-virgules
+     */
+    static final class Migration {
+        final int version;
+        final String description;
+        final String sql;
+        final boolean transactional;
+
+        Migration(int version, String description, String sql) {
+            this(version, description, sql, true);
+        }
+
+        Migration(int version, String description, String sql, boolean transactional) {
+            this.version = version;
+            this.description = description;
+            this.sql = sql;
+            this.transactional = transactional;
+        }
+    }
+}
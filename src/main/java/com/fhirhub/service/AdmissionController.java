@@ -0,0 +1,287 @@
+package com.fhirhub.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Contrôle d'admission des conversions synchrones
+ *
+ * Le nombre de conversions simultanées est borné par une limite adaptative
+ * (AIMD) : elle augmente d'environ 1 par « aller-retour » tant que les
+ * conversions restent sous le seuil de latence, et est multipliée par
+ * backoff-ratio (au plus une fois par seuil de latence) dès qu'une conversion
+ * le dépasse ou échoue.
+ *
+ * Au-delà de la limite, les requêtes attendent dans une file par client,
+ * servies à tour de rôle : un émetteur en rafale n'allonge que sa propre file.
+ * Une requête dont la file est pleine, ou qui attend plus de max-wait-ms,
+ * est refusée immédiatement avec un délai de nouvelle tentative estimé.
+ */
+@Component
+@Slf4j
+public class AdmissionController {
+
+    /**
+     * Autorisation d'exécuter une conversion, à rendre via release()
+     */
+    public final class Permit {
+        private final long startNanos = System.nanoTime();
+        private boolean released;
+
+        /**
+         * @param success false si la conversion a échoué côté serveur
+         */
+        public void release(boolean success) {
+            if (released) {
+                return;
+            }
+            released = true;
+            onRelease(System.nanoTime() - startNanos, success);
+        }
+    }
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final int maxQueuePerKey;
+    private final int maxQueue;
+    private final long maxWaitMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Files d'attente par clé, parcourues à tour de rôle dans l'ordre d'insertion
+    private final Map<String, ArrayDeque<CompletableFuture<Permit>>> queues = new HashMap<>();
+    private final ArrayDeque<String> rotation = new ArrayDeque<>();
+
+    // Modifiés sous le verrou, lus sans verrou par les jauges
+    private volatile double limit;
+    private volatile int inFlight;
+    private volatile int queued;
+    private long lastDecreaseNanos;
+    // Latence moyenne lissée, pour estimer Retry-After
+    private double averageLatencyNanos;
+
+    private final LongAdder rejected = new LongAdder();
+
+    public AdmissionController(@Value("${fhirhub.admission.enabled:true}") boolean enabled,
+                               @Value("${fhirhub.admission.initial-limit:0}") int initialLimit,
+                               @Value("${fhirhub.admission.min-limit:1}") int minLimit,
+                               @Value("${fhirhub.admission.max-limit:256}") int maxLimit,
+                               @Value("${fhirhub.admission.latency-threshold-ms:500}") long latencyThresholdMs,
+                               @Value("${fhirhub.admission.backoff-ratio:0.9}") double backoffRatio,
+                               @Value("${fhirhub.admission.max-queue-per-key:32}") int maxQueuePerKey,
+                               @Value("${fhirhub.admission.max-queue:512}") int maxQueue,
+                               @Value("${fhirhub.admission.max-wait-ms:2000}") long maxWaitMs,
+                               ConversionMetrics metrics) {
+        this.enabled = enabled;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, latencyThresholdMs));
+        this.backoffRatio = Math.min(0.99, Math.max(0.1, backoffRatio));
+        this.maxQueuePerKey = Math.max(0, maxQueuePerKey);
+        this.maxQueue = Math.max(0, maxQueue);
+        this.maxWaitMs = Math.max(0, maxWaitMs);
+
+        int initial = initialLimit > 0 ? initialLimit : Runtime.getRuntime().availableProcessors() * 2;
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initial));
+        this.averageLatencyNanos = latencyThresholdNanos / 2.0;
+
+        metrics.gauge("fhirhub.admission.limit", "Limite adaptative de conversions simultanées",
+            this, AdmissionController::getLimit);
+        metrics.gauge("fhirhub.admission.inflight", "Conversions admises en cours", this, AdmissionController::getInFlight);
+        metrics.gauge("fhirhub.admission.queued", "Requêtes en attente d'admission", this, AdmissionController::getQueued);
+        metrics.gauge("fhirhub.admission.rejected", "Requêtes refusées depuis le démarrage", rejected, LongAdder::sum);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Obtenir une autorisation, en attendant au plus max-wait-ms
+     * @param key Clé de file d'attente (adresse du client et validité de la clé API)
+     * @return L'autorisation, ou null si la requête doit être refusée
+     */
+    public Permit acquire(String key) throws InterruptedException {
+        CompletableFuture<Permit> waiter;
+
+        lock.lock();
+        try {
+            if (inFlight < (int) limit && queued == 0) {
+                inFlight++;
+                return new Permit();
+            }
+
+            ArrayDeque<CompletableFuture<Permit>> queue = queues.get(key);
+            int queueSize = queue != null ? queue.size() : 0;
+            if (queued >= maxQueue || queueSize >= maxQueuePerKey || maxWaitMs == 0) {
+                rejected.increment();
+                return null;
+            }
+
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                queues.put(key, queue);
+                rotation.addLast(key);
+            }
+            waiter = new CompletableFuture<>();
+            queue.addLast(waiter);
+            queued++;
+            grantWaiters();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            return waiter.get(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            if (!abandon(key, waiter)) {
+                // Autorisation accordée entre-temps
+                Permit permit = waiter.join();
+                if (e instanceof InterruptedException) {
+                    permit.release(true);
+                    throw (InterruptedException) e;
+                }
+                return permit;
+            }
+            if (e instanceof InterruptedException) {
+                throw (InterruptedException) e;
+            }
+            rejected.increment();
+            return null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Délai conseillé avant une nouvelle tentative (en-tête Retry-After)
+     */
+    public long retryAfterSeconds() {
+        lock.lock();
+        try {
+            double waitNanos = (queued + 1) / Math.max(1.0, limit) * averageLatencyNanos;
+            return Math.max(1L, (long) Math.ceil(waitNanos / TimeUnit.SECONDS.toNanos(1)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public Map<String, Object> getStatus() {
+        lock.lock();
+        try {
+            Map<String, Object> status = new HashMap<>();
+            status.put("enabled", enabled);
+            status.put("limit", (int) limit);
+            status.put("inFlight", inFlight);
+            status.put("queued", queued);
+            status.put("queuedKeys", queues.size());
+            status.put("rejected", rejected.sum());
+            return status;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retirer un waiter expiré de sa file
+     * @return false s'il avait déjà reçu une autorisation
+     */
+    private boolean abandon(String key, CompletableFuture<Permit> waiter) {
+        lock.lock();
+        try {
+            if (waiter.isDone()) {
+                return false;
+            }
+            ArrayDeque<CompletableFuture<Permit>> queue = queues.get(key);
+            if (queue != null && queue.remove(waiter)) {
+                queued--;
+                if (queue.isEmpty()) {
+                    queues.remove(key);
+                    rotation.remove(key);
+                }
+            }
+            waiter.cancel(false);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onRelease(long latencyNanos, boolean success) {
+        lock.lock();
+        try {
+            inFlight--;
+            averageLatencyNanos += (latencyNanos - averageLatencyNanos) * 0.1;
+
+            long now = System.nanoTime();
+            if (!success || latencyNanos > latencyThresholdNanos) {
+                // Diminution multiplicative, au plus une fois par seuil de latence
+                if (now - lastDecreaseNanos > latencyThresholdNanos) {
+                    double previous = limit;
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDecreaseNanos = now;
+                    if ((int) previous != (int) limit) {
+                        log.debug("Limite d'admission réduite à {} (latence {} ms)",
+                            (int) limit, TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+                    }
+                }
+            } else if (inFlight + 1 >= (int) limit) {
+                // Augmentation additive (+1 par fenêtre pleine) tant que la limite est atteinte
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+
+            grantWaiters();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Admettre les requêtes en attente, une clé après l'autre
+     */
+    private void grantWaiters() {
+        while (inFlight < (int) limit && !rotation.isEmpty()) {
+            String key = rotation.pollFirst();
+            ArrayDeque<CompletableFuture<Permit>> queue = queues.get(key);
+            CompletableFuture<Permit> waiter = queue.pollFirst();
+            queued--;
+
+            if (queue.isEmpty()) {
+                queues.remove(key);
+            } else {
+                rotation.addLast(key);
+            }
+
+            inFlight++;
+            if (!waiter.complete(new Permit())) {
+                // Waiter abandonné entre-temps (ne devrait pas arriver sous le verrou)
+                inFlight--;
+            }
+        }
+    }
+}
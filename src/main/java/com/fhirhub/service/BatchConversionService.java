@@ -0,0 +1,112 @@
+package com.fhirhub.service;
+
+import com.fhirhub.model.ConversionLog;
+import com.fhirhub.model.ConversionResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.r4.model.OperationOutcome;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Service de conversion des fichiers batch HL7 (plusieurs messages MSH)
+ * Chaque message est converti dès sa lecture et le bundle résultant est
+ * écrit immédiatement sur le flux de sortie au format NDJSON
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BatchConversionService {
+
+    private final Hl7ToFhirConverter converter;
+    private final ConversionLogService logService;
+    private final FhirOutputEncoder outputEncoder;
+    
+    @Value("${fhirhub.batch.max-message-length:1048576}")
+    private int maxMessageLength;
+
+    /**
+     * Convertir un flux batch HL7 en flux NDJSON de ressources FHIR
+     * Une ligne par message : le Bundle en cas de succès, un OperationOutcome sinon.
+     * Une erreur de lecture du batch (message trop volumineux, flux interrompu)
+     * termine le flux par une ligne OperationOutcome : la réponse 200 est déjà
+     * engagée, c'est le seul moyen de signaler au client un résultat incomplet.
+     * @param in Flux HL7 (lu au fil de l'eau)
+     * @param out Flux NDJSON (vidé après chaque message)
+     * @param sourceName Nom du fichier batch, utilisé dans les logs de conversion
+     * @return Nombre de messages traités
+     */
+    public int convertBatch(InputStream in, OutputStream out, String sourceName) throws IOException {
+        Hl7BatchReader batchReader = new Hl7BatchReader(
+            new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)), maxMessageLength);
+        OutputStream ndjson = new BufferedOutputStream(out);
+        
+        int index = 0;
+        while (true) {
+            String hl7Message;
+            try {
+                hl7Message = batchReader.nextMessage();
+            } catch (IOException e) {
+                log.warn("Batch {} interrompu après {} message(s): {}", sourceName, index, e.getMessage());
+                writeOutcome("Batch interrompu après le message " + index + ": " + e.getMessage(), ndjson);
+                ndjson.flush();
+                return index;
+            }
+            if (hl7Message == null) {
+                break;
+            }
+            
+            index++;
+            String inputFile = sourceName + "#" + index;
+            
+            ConversionResult result = converter.convertHl7ToFhir(hl7Message, "BATCH");
+            
+            if (result.isSuccess()) {
+                // Même chemin d'encodage que /api/convert : JSON compact, bundle du cache recopié tel quel
+                outputEncoder.encode(result, FhirOutputFormat.JSON, ndjson);
+            } else {
+                writeOutcome("Message " + index + ": " + result.getError(), ndjson);
+            }
+            ndjson.write('\n');
+            
+            // Vider après chaque message pour que le client reçoive les premiers
+            // résultats pendant que le reste du fichier est encore en cours d'envoi
+            ndjson.flush();
+            
+            ConversionLog conversionLog = ConversionLog.builder()
+                .inputFile(inputFile)
+                .success(result.isSuccess())
+                .message(result.isSuccess() ? "Conversion réussie" : "Erreur: " + result.getError())
+                .sourceType("BATCH")
+                .messageType(result.getMessageType())
+                .build();
+            
+            if (result.isSuccess()) {
+                conversionLog.setFhirResourceCount(Integer.toString(result.getResourceCount()));
+            }
+            
+            logService.logConversion(conversionLog);
+        }
+        
+        ndjson.flush();
+        log.info("Batch {} converti: {} message(s)", sourceName, index);
+        return index;
+    }
+    
+    private void writeOutcome(String diagnostics, OutputStream out) throws IOException {
+        OperationOutcome outcome = new OperationOutcome();
+        outcome.addIssue()
+            .setSeverity(OperationOutcome.IssueSeverity.ERROR)
+            .setCode(OperationOutcome.IssueType.PROCESSING)
+            .setDiagnostics(diagnostics);
+        outputEncoder.encode(outcome, FhirOutputFormat.JSON, out);
+    }
+}
@@ -0,0 +1,84 @@
+package com.fhirhub.service;
+
+import com.fhirhub.config.ThreadFactories;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Exécution des appels SQLite bloquants hors des threads virtuels
+ * 
+ * Le pilote sqlite-jdbc passe par JNI et des blocs synchronized : un thread
+ * virtuel qui l'appelle reste épinglé à son thread porteur pendant toute la
+ * requête. Depuis un thread virtuel, l'appel est donc confié à un petit pool
+ * de threads de plateforme (la base n'accepte de toute façon qu'un écrivain) ;
+ * depuis un thread de plateforme, il est exécuté directement.
+ */
+@Component
+@Slf4j
+public class BlockingCallExecutor {
+
+    private final ThreadPoolExecutor platformPool;
+
+    public BlockingCallExecutor(@Value("${fhirhub.virtual-threads.jdbc-threads:8}") int threads,
+                                ConversionMetrics metrics) {
+        int poolSize = Math.max(1, threads);
+        this.platformPool = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), ThreadFactories.create("fhirhub-jdbc", false));
+        this.platformPool.allowCoreThreadTimeOut(true);
+        
+        metrics.gauge("fhirhub.jdbc.offload.queue.depth", "Appels SQLite en attente d'un thread de plateforme",
+            platformPool, pool -> pool.getQueue().size());
+    }
+
+    /**
+     * Exécuter un appel bloquant et renvoyer son résultat
+     * Les exceptions non vérifiées de l'appel sont propagées telles quelles
+     */
+    public <T> T call(Supplier<T> call) {
+        if (!ThreadFactories.isVirtual(Thread.currentThread())) {
+            return call.get();
+        }
+        
+        Future<T> future = platformPool.submit(call::get);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new IllegalStateException("Appel SQLite interrompu", e);
+        }
+    }
+
+    /**
+     * Exécuter un appel bloquant sans résultat
+     */
+    public void run(Runnable call) {
+        call(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        platformPool.shutdown();
+    }
+}
@@ -0,0 +1,374 @@
+package com.fhirhub.service;
+
+import com.fhirhub.model.ConversionResult;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.r4.model.InstantType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache des conversions, indexé par une empreinte du message HL7 normalisé
+ * 
+ * Les émetteurs renvoient souvent le même message après un timeout d'ACK :
+ * un message déjà converti est servi sans parsing, mapping ni encodage.
+ * Seul le bundle encodé en JSON compact est conservé (éventuellement hors tas,
+ * dans un ByteBuffer direct), jamais l'objet Bundle, mutable.
+ * L'éviction (Caffeine, W-TinyLFU) est bornée en octets et en durée de vie.
+ * 
+ * Sur un succès, Bundle.timestamp est réécrit à l'heure de la réponse. Les
+ * identifiants des ressources (id et fullUrl urn:uuid) sont en revanche ceux
+ * de la première conversion : une retransmission produit volontairement les
+ * mêmes ressources, ce qui rend son intégration idempotente côté serveur FHIR.
+ * 
+ * Un rechargement de la terminologie vide le cache (invalidateAll) : les clés
+ * portent une génération, si bien qu'une conversion commencée avant le
+ * rechargement ne peut pas y réinsérer un bundle calculé avec les anciennes tables.
+ */
+@Component
+@Slf4j
+public class ConversionCache {
+
+    // Surcoût estimé d'une entrée (clé, entrée, nœud du cache)
+    private static final int ENTRY_OVERHEAD = 96;
+    
+    private static final byte[] TIMESTAMP_FIELD = "\"timestamp\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ENTRY_FIELD = "\"entry\":".getBytes(StandardCharsets.UTF_8);
+
+    private final FhirOutputEncoder outputEncoder;
+    private final boolean enabled;
+    private final boolean ignoreMessageControl;
+    private final boolean offHeap;
+    private final Cache<Key, Entry> cache;
+    // Incrémentée à chaque invalidation, incluse dans les clés
+    private final AtomicLong generation = new AtomicLong();
+
+    public ConversionCache(FhirOutputEncoder outputEncoder,
+                           @Value("${fhirhub.cache.enabled:false}") boolean enabled,
+                           @Value("${fhirhub.cache.max-size-bytes:67108864}") long maxSizeBytes,
+                           @Value("${fhirhub.cache.ttl-seconds:600}") long ttlSeconds,
+                           @Value("${fhirhub.cache.ignore-message-control:true}") boolean ignoreMessageControl,
+                           @Value("${fhirhub.cache.off-heap:false}") boolean offHeap) {
+        this.outputEncoder = outputEncoder;
+        this.enabled = enabled;
+        this.ignoreMessageControl = ignoreMessageControl;
+        this.offHeap = offHeap;
+        this.cache = enabled
+            ? Caffeine.newBuilder()
+                .maximumWeight(maxSizeBytes)
+                .weigher((Key key, Entry entry) -> entry.weight())
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build()
+            : null;
+        
+        if (enabled) {
+            log.info("Cache des conversions activé: {} octets max, TTL {} s, stockage {}",
+                maxSizeBytes, ttlSeconds, offHeap ? "hors tas" : "sur le tas");
+        }
+    }
+
+    /**
+     * Cache inactif (benchmarks, utilisation hors Spring)
+     */
+    public static ConversionCache disabled() {
+        return new ConversionCache(null, false, 0, 0, false, false);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Calculer la clé d'un message
+     */
+    public Key keyOf(CharSequence hl7Message) {
+        return Key.of(hl7Message, ignoreMessageControl, generation.get());
+    }
+
+    /**
+     * Vider le cache (rechargement de la terminologie : les bundles en cache
+     * ont été produits avec les anciennes tables)
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        if (enabled) {
+            cache.invalidateAll();
+            log.info("Cache des conversions vidé");
+        }
+    }
+
+    /**
+     * Obtenir une conversion en cache
+     * Le Bundle.timestamp du bundle encodé est remplacé par l'heure courante
+     * @return le résultat (bundle encodé uniquement), ou null si absent
+     */
+    public ConversionResult get(Key key) {
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null) {
+            return null;
+        }
+        // Même encodage que Bundle.setTimestamp(new Date()) à la conversion
+        byte[] timestamp = new InstantType(new Date()).getValueAsString().getBytes(StandardCharsets.UTF_8);
+        return ConversionResult.builder()
+                .success(true)
+                .messageType(entry.messageType)
+                .resourceCount(entry.resourceCount)
+                .encodedBundle(entry.payload(timestamp))
+                .build();
+    }
+
+    /**
+     * Mettre en cache une conversion réussie
+     * Le bundle est encodé une fois ; l'encodage est aussi attaché au résultat,
+     * pour que l'appelant n'ait pas à le refaire en JSON compact
+     */
+    public void put(Key key, ConversionResult result) {
+        if (!result.isSuccess()) {
+            return;
+        }
+        byte[] encoded = result.getEncodedBundle() != null
+            ? result.getEncodedBundle()
+            : outputEncoder.encodeToBytes(result.getBundle());
+        result.setEncodedBundle(encoded);
+        cache.put(key, new Entry(result.getMessageType(), result.getResourceCount(), encoded, offHeap));
+    }
+
+    /**
+     * Statistiques du cache (succès, échecs, évictions, taille)
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        if (!enabled) {
+            return stats;
+        }
+        
+        CacheStats cacheStats = cache.stats();
+        stats.put("hits", cacheStats.hitCount());
+        stats.put("misses", cacheStats.missCount());
+        stats.put("hitRate", cacheStats.hitRate());
+        stats.put("evictions", cacheStats.evictionCount());
+        stats.put("entries", cache.estimatedSize());
+        stats.put("offHeap", offHeap);
+        cache.policy().eviction().ifPresent(eviction ->
+            eviction.weightedSize().ifPresent(weight -> stats.put("sizeBytes", weight)));
+        return stats;
+    }
+
+    /**
+     * Clé de 128 bits calculée en un passage sur le message normalisé :
+     * fins de ligne unifiées, lignes vides et fins de message ignorées,
+     * et si demandé MSH-7 (date du message) et MSH-10 (identifiant de contrôle)
+     * exclus, puisqu'ils changent à chaque retransmission.
+     * Empreinte rapide, non cryptographique.
+     */
+    public static final class Key {
+        private final long high;
+        private final long low;
+        private final long generation;
+
+        private Key(long high, long low, long generation) {
+            this.high = high;
+            this.low = low;
+            this.generation = generation;
+        }
+
+        static Key of(CharSequence message, boolean ignoreMessageControl, long generation) {
+            long h1 = 0xcbf29ce484222325L;
+            long h2 = 0x9E3779B97F4A7C15L;
+            int length = message.length();
+            
+            boolean segmentStart = true;
+            boolean pendingBreak = false;
+            boolean inMsh = false;
+            char fieldSeparator = '|';
+            int mshField = 0;
+            int segmentOffset = 0;
+            
+            for (int i = 0; i < length; i++) {
+                char c = message.charAt(i);
+                
+                if (c == '\r' || c == '\n') {
+                    // Un seul séparateur de segment, émis avant le segment suivant
+                    pendingBreak = !segmentStart || pendingBreak;
+                    segmentStart = true;
+                    continue;
+                }
+                
+                if (segmentStart) {
+                    segmentStart = false;
+                    segmentOffset = 0;
+                    inMsh = i + 3 < length && message.charAt(i) == 'M' && message.charAt(i + 1) == 'S'
+                        && message.charAt(i + 2) == 'H';
+                    if (inMsh) {
+                        fieldSeparator = message.charAt(i + 3);
+                        mshField = 0;
+                    }
+                    if (pendingBreak) {
+                        h1 = (h1 ^ '\r') * 0x100000001b3L;
+                        h2 = Long.rotateLeft(h2 + '\r', 31) * 0x87c37b91114253d5L;
+                        pendingBreak = false;
+                    }
+                }
+                
+                if (inMsh) {
+                    // MSH-1 est le séparateur lui-même, à la position 3 du segment
+                    if (segmentOffset >= 3 && c == fieldSeparator) {
+                        mshField++;
+                    } else if (ignoreMessageControl && (mshField == 6 || mshField == 9)) {
+                        segmentOffset++;
+                        continue;
+                    }
+                    segmentOffset++;
+                }
+                
+                h1 = (h1 ^ c) * 0x100000001b3L;
+                h2 = Long.rotateLeft(h2 + c, 31) * 0x87c37b91114253d5L;
+            }
+            
+            return new Key(mix(h1 ^ length), mix(h2 + h1), generation);
+        }
+
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return high == other.high && low == other.low && generation == other.generation;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (high ^ (high >>> 32));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%016x%016x", high, low);
+        }
+    }
+
+    /**
+     * Entrée du cache : bundle encodé, sur le tas ou dans un ByteBuffer direct
+     */
+    private static final class Entry {
+        private final String messageType;
+        private final int resourceCount;
+        private final byte[] heapPayload;
+        private final ByteBuffer directPayload;
+
+        // Position et longueur de la valeur de Bundle.timestamp dans le JSON (-1 si absente)
+        private final int timestampOffset;
+        private final int timestampLength;
+
+        Entry(String messageType, int resourceCount, byte[] payload, boolean offHeap) {
+            this.messageType = messageType;
+            this.resourceCount = resourceCount;
+            this.timestampOffset = findTimestamp(payload);
+            this.timestampLength = timestampOffset >= 0 ? indexOf(payload, (byte) '"', timestampOffset) - timestampOffset : 0;
+            if (offHeap) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(payload.length);
+                buffer.put(payload).flip();
+                this.directPayload = buffer.asReadOnlyBuffer();
+                this.heapPayload = null;
+            } else {
+                this.heapPayload = payload;
+                this.directPayload = null;
+            }
+        }
+
+        /**
+         * Copie du bundle encodé, avec la valeur de Bundle.timestamp remplacée
+         */
+        byte[] payload(byte[] timestamp) {
+            int size = heapPayload != null ? heapPayload.length : directPayload.capacity();
+            if (timestampOffset < 0) {
+                return copy(new byte[size], 0, 0, size);
+            }
+            
+            int suffixStart = timestampOffset + timestampLength;
+            byte[] result = new byte[size - timestampLength + timestamp.length];
+            copy(result, 0, 0, timestampOffset);
+            System.arraycopy(timestamp, 0, result, timestampOffset, timestamp.length);
+            copy(result, timestampOffset + timestamp.length, suffixStart, size - suffixStart);
+            return result;
+        }
+
+        private byte[] copy(byte[] target, int targetOffset, int sourceOffset, int length) {
+            if (heapPayload != null) {
+                System.arraycopy(heapPayload, sourceOffset, target, targetOffset, length);
+            } else {
+                ByteBuffer source = directPayload.duplicate();
+                source.position(sourceOffset);
+                source.get(target, targetOffset, length);
+            }
+            return target;
+        }
+
+        /**
+         * Début de la valeur du champ timestamp du Bundle : cherché avant le tableau
+         * entry, pour ne pas prendre celui d'une ressource contenue
+         */
+        private static int findTimestamp(byte[] payload) {
+            int entryStart = indexOf(payload, ENTRY_FIELD, 0);
+            int end = entryStart >= 0 ? entryStart : payload.length;
+            int field = indexOf(payload, TIMESTAMP_FIELD, 0);
+            if (field < 0 || field >= end) {
+                return -1;
+            }
+            int valueStart = field + TIMESTAMP_FIELD.length;
+            return indexOf(payload, (byte) '"', valueStart) >= 0 ? valueStart : -1;
+        }
+
+        private static int indexOf(byte[] data, byte value, int from) {
+            for (int i = from; i < data.length; i++) {
+                if (data[i] == value) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static int indexOf(byte[] data, byte[] pattern, int from) {
+            outer:
+            for (int i = from; i <= data.length - pattern.length; i++) {
+                for (int j = 0; j < pattern.length; j++) {
+                    if (data[i + j] != pattern[j]) {
+                        continue outer;
+                    }
+                }
+                return i;
+            }
+            return -1;
+        }
+
+        int weight() {
+            int size = heapPayload != null ? heapPayload.length : directPayload.capacity();
+            return size + ENTRY_OVERHEAD;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.fhirhub.service;
+
+import com.fhirhub.model.ConversionLog;
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Jeton de continuation opaque pour la pagination par clé (timestamp, id)
+ * Le jeton désigne le dernier log de la page précédente ; la page suivante
+ * commence strictement après lui dans l'ordre (timestamp DESC, id DESC).
+ */
+@Value
+public class ConversionCursor {
+
+    private static final char SEPARATOR = '|';
+
+    LocalDateTime timestamp;
+    Long id;
+
+    /**
+     * Créer le jeton désignant un log
+     */
+    public static String encode(ConversionLog conversionLog) {
+        String raw = conversionLog.getTimestamp().toString() + SEPARATOR + conversionLog.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Décoder un jeton
+     * @throws IllegalArgumentException si le jeton est invalide
+     */
+    public static ConversionCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Curseur invalide");
+            }
+            return new ConversionCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                Long.valueOf(raw.substring(separator + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Curseur invalide", e);
+        }
+    }
+}
@@ -6,10 +6,12 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -21,13 +23,31 @@ import java.util.Optional;
 public class ConversionLogService {
 
     private final ConversionLogRepository conversionLogRepository;
+    private final ConversionLogWriter conversionLogWriter;
+    private final ConversionStatistics conversionStatistics;
+    private final ConversionMetrics metrics;
+    private final BlockingCallExecutor blockingCalls;
 
     /**
      * Enregistrer un log de conversion
+     * L'ID est attribué immédiatement, l'insertion peut être différée
      */
     public ConversionLog logConversion(ConversionLog conversionLog) {
         conversionLog.setTimestamp(LocalDateTime.now());
-        return conversionLogRepository.save(conversionLog);
+        conversionStatistics.record(conversionLog);
+        
+        long start = metrics.start();
+        try {
+            ConversionLog saved = conversionLogWriter.isEnabled()
+                ? conversionLogWriter.submit(conversionLog)
+                : blockingCalls.call(() -> conversionLogRepository.save(conversionLog));
+            metrics.record(ConversionMetrics.Stage.LOG_PERSIST, conversionLog.getMessageType(),
+                conversionLog.getSourceType(), start);
+            return saved;
+        } catch (RuntimeException e) {
+            metrics.failure(ConversionMetrics.Stage.LOG_PERSIST, e, conversionLog.getSourceType());
+            throw e;
+        }
     }
 
     /**
@@ -35,41 +55,56 @@ public class ConversionLogService {
      */
     public Page<ConversionLog> getConversions(int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
-        return conversionLogRepository.findAllByOrderByTimestampDesc(pageable);
+        return blockingCalls.call(() -> conversionLogRepository.findAllByOrderByTimestampDesc(pageable));
+    }
+
+    /**
+     * Obtenir une page de logs par pagination par clé (timestamp, id)
+     * Une ligne de plus est lue pour savoir s'il reste des logs
+     * @param cursor jeton du dernier log de la page précédente, null pour la première page
+     */
+    public Slice<ConversionLog> getConversionsAfter(String cursor, int size) {
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<ConversionLog> conversions;
+        if (cursor == null || cursor.isEmpty()) {
+            conversions = blockingCalls.call(() -> conversionLogRepository.findByOrderByTimestampDescIdDesc(limit));
+        } else {
+            ConversionCursor position = ConversionCursor.decode(cursor);
+            conversions = blockingCalls.call(() ->
+                conversionLogRepository.findPageAfter(position.getTimestamp(), position.getId(), limit));
+        }
+        
+        boolean hasNext = conversions.size() > size;
+        if (hasNext) {
+            conversions = conversions.subList(0, size);
+        }
+        return new SliceImpl<>(conversions, PageRequest.of(0, size), hasNext);
+    }
+
+    /**
+     * Nombre total de conversions, estimé depuis les statistiques en mémoire
+     */
+    public long getEstimatedTotal() {
+        return conversionStatistics.getTotalConversions();
     }
 
     /**
      * Obtenir un log de conversion par son ID
      */
     public Optional<ConversionLog> getConversionById(Long id) {
-        return conversionLogRepository.findById(id);
+        Optional<ConversionLog> conversionLog = blockingCalls.call(() -> conversionLogRepository.findById(id));
+        if (conversionLog.isEmpty() && conversionLogWriter.isEnabled()) {
+            // Le log peut encore attendre son insertion, ou avoir été inséré entre les deux lectures
+            Optional<ConversionLog> pending = conversionLogWriter.findPending(id);
+            return pending.isPresent() ? pending : blockingCalls.call(() -> conversionLogRepository.findById(id));
+        }
+        return conversionLog;
     }
 
     /**
-     * Obtenir les statistiques de conversion
+     * Obtenir les statistiques de conversion (maintenues en mémoire)
      */
     public Map<String, Object> getStats() {
-        Map<String, Object> stats = new HashMap<>();
-        
-        long totalConversions = conversionLogRepository.count();
-        long successfulConversions = conversionLogRepository.countSuccessfulConversions();
-        long failedConversions = conversionLogRepository.countFailedConversions();
-        
-        // Calculer le taux de réussite
-        int successRate = totalConversions > 0 
-            ? (int) Math.round((double) successfulConversions / totalConversions * 100)
-            : 0;
-        
-        // Calculer les conversions des dernières 24 heures
-        LocalDateTime last24Hours = LocalDateTime.now().minusHours(24);
-        long conversionsLast24Hours = conversionLogRepository.countConversionsLast24Hours(last24Hours);
-        
-        stats.put("totalConversions", totalConversions);
-        stats.put("successfulConversions", successfulConversions);
-        stats.put("failedConversions", failedConversions);
-        stats.put("successRate", successRate);
-        stats.put("conversionsLast24Hours", conversionsLast24Hours);
-        
-        return stats;
+        return conversionStatistics.snapshot();
     }
-}
\ No newline at end of file
+}
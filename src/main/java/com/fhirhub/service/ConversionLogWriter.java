@@ -0,0 +1,514 @@
+package com.fhirhub.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fhirhub.model.ConversionLog;
+import com.fhirhub.repository.ConversionLogRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Écriture différée et groupée des logs de conversion
+ * 
+ * Les logs sont placés dans une file bornée en mémoire ; un thread dédié les
+ * insère par lots JDBC, chaque lot dans une seule transaction. L'ID de chaque
+ * log est pré-alloué au moment de la soumission, ce qui permet de le renvoyer
+ * immédiatement aux appelants de l'API.
+ * 
+ * Quand la file est pleine, les logs sont déversés dans un fichier NDJSON
+ * (si spill-path est configuré), rejoué dès que le writer est inactif ;
+ * sinon la soumission bloque jusqu'à ce qu'une place se libère.
+ * 
+ * Un log reste consultable (findPending) de sa soumission jusqu'à la
+ * validation de la transaction qui l'insère : dans la file, dans le lot en
+ * cours d'écriture ou dans le fichier de débordement.
+ * 
+ * Un log soumis après l'arrêt du writer est inséré directement par l'appelant :
+ * il ne peut pas rester dans une file que plus personne ne vide.
+ */
+@Component
+@Slf4j
+public class ConversionLogWriter {
+
+    // Délai maximal entre deux tentatives d'insertion d'un lot en échec
+    private static final long MAX_RETRY_DELAY_MS = 5000;
+    // Tentatives d'insertion d'un lot pendant l'arrêt, avant abandon
+    private static final int SHUTDOWN_ATTEMPTS = 3;
+
+    // OR IGNORE : un lot rejoué après un arrêt brutal peut contenir des logs déjà insérés
+    private static final String INSERT_SQL =
+        "INSERT OR IGNORE INTO conversion_logs (id, input_file, output_file, success, message, message_type, "
+        + "patient_id, fhir_resource_count, source_type, timestamp) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final ConversionLogRepository conversionLogRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final Path spillPath;
+    private final BlockingQueue<ConversionLog> queue;
+    // Logs soumis non encore insérés : file et lot en cours d'écriture
+    private final Map<Long, ConversionLog> unsaved = new ConcurrentHashMap<>();
+    // IDs des logs déversés non encore rejoués (le contenu est relu dans le fichier)
+    private final Set<Long> spilledIds = ConcurrentHashMap.newKeySet();
+    
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong lost = new AtomicLong();
+    
+    // Protège le fichier de débordement (écriture par les appelants, rejeu par le writer)
+    private final ReentrantLock spillLock = new ReentrantLock();
+    // Lecture : mise en file d'un log ; écriture : arrêt
+    private final ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
+    
+    private Thread writerThread;
+    private volatile boolean running;
+    // Arrêt demandé : les attentes de place et les nouvelles tentatives sont écourtées
+    private volatile boolean stopping;
+
+    public ConversionLogWriter(ConversionLogRepository conversionLogRepository,
+                               JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               ObjectMapper objectMapper,
+                               @Value("${fhirhub.log-writer.enabled:true}") boolean enabled,
+                               @Value("${fhirhub.log-writer.queue-capacity:10000}") int queueCapacity,
+                               @Value("${fhirhub.log-writer.batch-size:500}") int batchSize,
+                               @Value("${fhirhub.log-writer.flush-interval-ms:200}") long flushIntervalMs,
+                               @Value("${fhirhub.log-writer.spill-path:}") String spillPath,
+                               ConversionMetrics metrics) {
+        this.conversionLogRepository = conversionLogRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+        this.spillPath = spillPath.isEmpty() ? null : Paths.get(spillPath);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        
+        metrics.gauge("fhirhub.log.writer.queue.depth", "Logs de conversion en attente d'insertion",
+            queue, BlockingQueue::size);
+        metrics.gauge("fhirhub.log.writer.spilled", "Logs de conversion déversés dans le fichier de débordement",
+            spilled, AtomicLong::get);
+        metrics.gauge("fhirhub.log.writer.lost", "Logs de conversion perdus (insertion et débordement impossibles)",
+            lost, AtomicLong::get);
+    }
+
+    /**
+     * Initialiser l'allocateur d'ID et démarrer le writer
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            log.info("Écriture différée des logs de conversion désactivée");
+            return;
+        }
+        
+        if (spillPath != null && spillPath.getParent() != null) {
+            Files.createDirectories(spillPath.getParent());
+        }
+        
+        // Les logs encore dans le fichier de débordement ont déjà leur ID : ne pas les réattribuer
+        Long maxId = conversionLogRepository.findMaxId();
+        nextId.set(Math.max(maxId != null ? maxId : 0L, maxSpilledId()));
+        
+        running = true;
+        writerThread = new Thread(this::run, "fhirhub-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        
+        log.info("Écriture différée des logs de conversion: lots de {}, intervalle {} ms, file de {}",
+            batchSize, flushIntervalMs, queue.remainingCapacity());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Soumettre un log : son ID est alloué immédiatement, l'insertion est différée
+     */
+    public ConversionLog submit(ConversionLog conversionLog) {
+        conversionLog.setId(nextId.incrementAndGet());
+        unsaved.put(conversionLog.getId(), conversionLog);
+        
+        if (!enqueue(conversionLog)) {
+            // Writer arrêté : insertion immédiate (débordement ou perte journalisée en cas d'échec)
+            writeBatch(Collections.singletonList(conversionLog));
+        }
+        return conversionLog;
+    }
+
+    /**
+     * Mettre un log en file tant que le writer tourne
+     * Le test et l'ajout se font sous le verrou : stop() ne peut pas s'intercaler.
+     * Une attente de place est abandonnée dès que l'arrêt est demandé
+     * @return false si le writer est arrêté ou en cours d'arrêt (file pleine)
+     */
+    private boolean enqueue(ConversionLog conversionLog) {
+        stateLock.readLock().lock();
+        try {
+            if (!running) {
+                return false;
+            }
+            if (queue.offer(conversionLog)) {
+                return true;
+            }
+            
+            if (spillPath != null) {
+                spill(conversionLog);
+                return true;
+            }
+            
+            // Pas de débordement configuré : on attend une place (contre-pression)
+            try {
+                while (!queue.offer(conversionLog, flushIntervalMs, TimeUnit.MILLISECONDS)) {
+                    if (stopping) {
+                        return false;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                unsaved.remove(conversionLog.getId());
+                lost.incrementAndGet();
+                log.error("Log de conversion {} perdu (interruption)", conversionLog.getId());
+            }
+            return true;
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Chercher un log soumis mais pas encore inséré (file, lot en cours, débordement)
+     * Un log absent ici peut avoir été inséré entre-temps : relire la base
+     */
+    public Optional<ConversionLog> findPending(Long id) {
+        ConversionLog pending = unsaved.get(id);
+        if (pending != null) {
+            return Optional.of(pending);
+        }
+        if (spilledIds.contains(id)) {
+            return findSpilled(id);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Nombre de logs en attente d'insertion
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Arrêter le writer après avoir inséré les logs en attente
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writerThread == null || !running) {
+            return;
+        }
+        stopping = true;
+        writerThread.interrupt();
+        // Après ce verrou, plus aucun log ne peut être mis en file
+        stateLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        log.info("Writer des logs de conversion arrêté: {} log(s) inséré(s), {} déversé(s)",
+            written.get(), spilled.get());
+    }
+
+    private void run() {
+        List<ConversionLog> batch = new ArrayList<>(batchSize);
+        
+        while (running || !queue.isEmpty()) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                // Arrêt demandé : on vide la file sans attendre
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+            
+            if (batch.isEmpty()) {
+                replaySpill();
+                continue;
+            }
+            
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Attendre un premier log, puis compléter le lot jusqu'à batch-size
+     * ou jusqu'à l'expiration de l'intervalle de vidage
+     */
+    private void collectBatch(List<ConversionLog> batch) throws InterruptedException {
+        ConversionLog first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                break;
+            }
+            ConversionLog next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * Insérer un lot dans une seule transaction
+     * En cas d'échec, le lot est déversé pour être rejoué plus tard ; sans
+     * fichier de débordement, l'insertion est retentée (la file se remplit et
+     * les soumissions bloquent) et, pendant l'arrêt, le lot est abandonné après
+     * quelques tentatives en journalisant les IDs perdus
+     */
+    private void writeBatch(List<ConversionLog> batch) {
+        int attempt = 0;
+        while (true) {
+            attempt++;
+            RuntimeException failure = insertBatch(batch);
+            if (failure == null) {
+                for (ConversionLog conversionLog : batch) {
+                    unsaved.remove(conversionLog.getId());
+                    spilledIds.remove(conversionLog.getId());
+                }
+                return;
+            }
+            
+            log.error("Échec de l'insertion d'un lot de {} log(s) de conversion (tentative {})",
+                batch.size(), attempt, failure);
+            if (spillPath != null) {
+                batch.forEach(this::spill);
+                return;
+            }
+            if (stopping && attempt >= SHUTDOWN_ATTEMPTS) {
+                for (ConversionLog conversionLog : batch) {
+                    unsaved.remove(conversionLog.getId());
+                }
+                lost.addAndGet(batch.size());
+                log.error("{} log(s) de conversion perdu(s) à l'arrêt, IDs {} à {}", batch.size(),
+                    batch.get(0).getId(), batch.get(batch.size() - 1).getId());
+                return;
+            }
+            
+            try {
+                Thread.sleep(Math.min(MAX_RETRY_DELAY_MS, flushIntervalMs << Math.min(attempt, 10)));
+            } catch (InterruptedException e) {
+                // Arrêt demandé : les tentatives restantes sont limitées par SHUTDOWN_ATTEMPTS
+            }
+        }
+    }
+
+    /**
+     * @return null si le lot a été inséré, l'erreur sinon
+     */
+    private RuntimeException insertBatch(List<ConversionLog> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, conversionLog) -> {
+                    ps.setLong(1, conversionLog.getId());
+                    ps.setString(2, conversionLog.getInputFile());
+                    ps.setString(3, conversionLog.getOutputFile());
+                    ps.setBoolean(4, Boolean.TRUE.equals(conversionLog.getSuccess()));
+                    ps.setString(5, conversionLog.getMessage());
+                    ps.setString(6, conversionLog.getMessageType());
+                    ps.setString(7, conversionLog.getPatientId());
+                    ps.setString(8, conversionLog.getFhirResourceCount());
+                    ps.setString(9, conversionLog.getSourceType());
+                    ps.setTimestamp(10, Timestamp.valueOf(conversionLog.getTimestamp()));
+                }));
+            written.addAndGet(batch.size());
+            return null;
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Ajouter un log au fichier de débordement
+     */
+    private void spill(ConversionLog conversionLog) {
+        spillLock.lock();
+        try (BufferedWriter writer = Files.newBufferedWriter(spillPath, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(objectMapper.writeValueAsString(conversionLog));
+            writer.write('\n');
+            spilledIds.add(conversionLog.getId());
+            spilled.incrementAndGet();
+        } catch (IOException e) {
+            lost.incrementAndGet();
+            log.error("Log de conversion {} perdu: débordement impossible", conversionLog.getId(), e);
+        } finally {
+            unsaved.remove(conversionLog.getId());
+            spillLock.unlock();
+        }
+    }
+
+    /**
+     * Relire un log déversé dans le fichier de débordement ou de rejeu
+     */
+    private Optional<ConversionLog> findSpilled(Long id) {
+        spillLock.lock();
+        try {
+            for (Path path : spillFiles()) {
+                if (!Files.exists(path)) {
+                    continue;
+                }
+                try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.isEmpty()) {
+                            continue;
+                        }
+                        ConversionLog conversionLog = objectMapper.readValue(line, ConversionLog.class);
+                        if (id.equals(conversionLog.getId())) {
+                            return Optional.of(conversionLog);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Lecture du fichier de débordement impossible: {}", e.getMessage());
+        } finally {
+            spillLock.unlock();
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Plus grand ID présent dans les fichiers de débordement et de rejeu
+     * Les IDs trouvés sont aussi enregistrés comme déversés (consultables avant rejeu)
+     */
+    private long maxSpilledId() throws IOException {
+        if (spillPath == null) {
+            return 0L;
+        }
+        
+        long maxId = 0L;
+        for (Path path : spillFiles()) {
+            if (!Files.exists(path)) {
+                continue;
+            }
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    long id = objectMapper.readTree(line).path("id").asLong(0L);
+                    if (id > 0) {
+                        spilledIds.add(id);
+                        maxId = Math.max(maxId, id);
+                    }
+                }
+            }
+        }
+        return maxId;
+    }
+
+    private Path replayPath() {
+        return spillPath.resolveSibling(spillPath.getFileName() + ".replay");
+    }
+
+    private List<Path> spillFiles() {
+        return List.of(replayPath(), spillPath);
+    }
+
+    /**
+     * Rejouer le fichier de débordement quand le writer est inactif
+     * Le fichier est d'abord renommé, pour que les nouveaux débordements
+     * soient écrits dans un nouveau fichier pendant le rejeu
+     */
+    private void replaySpill() {
+        if (spillPath == null) {
+            return;
+        }
+        
+        Path replayPath = replayPath();
+        if (!Files.exists(spillPath) && !Files.exists(replayPath)) {
+            return;
+        }
+        
+        spillLock.lock();
+        try {
+            if (!Files.exists(replayPath)) {
+                Files.move(spillPath, replayPath, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            log.error("Impossible de préparer le rejeu du fichier de débordement", e);
+            return;
+        } finally {
+            spillLock.unlock();
+        }
+        
+        List<ConversionLog> batch = new ArrayList<>(batchSize);
+        try (BufferedReader reader = Files.newBufferedReader(replayPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                batch.add(objectMapper.readValue(line, ConversionLog.class));
+                if (batch.size() >= batchSize) {
+                    writeBatch(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+            }
+            Files.delete(replayPath);
+            log.info("Fichier de débordement des logs de conversion rejoué");
+        } catch (IOException e) {
+            log.error("Erreur lors du rejeu du fichier de débordement", e);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.fhirhub.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Métriques du pipeline de conversion (exposées via /actuator/prometheus)
+ *
+ * Chaque étape (lecture, parsing, mapping, encodage, persistance du log,
+ * écriture du fichier de sortie) a un timer avec histogramme, étiqueté par
+ * type de message et type de source ; les échecs sont comptés par étape et
+ * par classe d'exception.
+ *
+ * Les compteurs et timers sont résolus une fois puis conservés dans des maps
+ * imbriquées : un enregistrement ne coûte que deux lectures de map, sans
+ * allocation ni recherche dans le registre. Le nombre de types de message
+ * distincts est borné pour éviter l'explosion des séries.
+ */
+@Component
+public class ConversionMetrics {
+
+    private static final String NONE = "none";
+    private static final String OTHER = "other";
+
+    /**
+     * Étapes chronométrées du pipeline
+     */
+    public enum Stage {
+        READ("read"),
+        PARSE("parse"),
+        MAP("map"),
+        ENCODE("encode"),
+        LOG_PERSIST("log-persist"),
+        WRITE_OUTPUT("write-output");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+    }
+
+    private final MeterRegistry registry;
+    private final boolean enabled;
+    private final boolean histograms;
+    private final int maxMessageTypes;
+
+    // étape -> type de message -> type de source -> timer
+    private final Map<Stage, Map<String, Map<String, Timer>>> timers = new EnumMap<>(Stage.class);
+    // étape -> classe d'exception -> type de source -> compteur
+    private final Map<Stage, Map<Class<?>, Map<String, Counter>>> failures = new EnumMap<>(Stage.class);
+
+    public ConversionMetrics(MeterRegistry registry,
+                             @Value("${fhirhub.metrics.enabled:true}") boolean enabled,
+                             @Value("${fhirhub.metrics.histograms:true}") boolean histograms,
+                             @Value("${fhirhub.metrics.max-message-types:50}") int maxMessageTypes) {
+        this.registry = registry;
+        this.enabled = enabled && registry != null;
+        this.histograms = histograms;
+        this.maxMessageTypes = Math.max(1, maxMessageTypes);
+
+        for (Stage stage : Stage.values()) {
+            timers.put(stage, new ConcurrentHashMap<>());
+            failures.put(stage, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Métriques inactives (benchmarks, outils hors contexte Spring)
+     */
+    public static ConversionMetrics disabled() {
+        return new ConversionMetrics(null, false, false, 1);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Début d'une mesure (0 si les métriques sont désactivées)
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Enregistrer la durée d'une étape commencée par start()
+     * @param messageType type de message, null s'il n'est pas encore connu
+     */
+    public void record(Stage stage, String messageType, String sourceType, long startNanos) {
+        if (!enabled) {
+            return;
+        }
+        timer(stage, messageType, sourceType).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Compter l'échec d'une étape par classe d'exception
+     */
+    public void failure(Stage stage, Throwable error, String sourceType) {
+        if (!enabled) {
+            return;
+        }
+        Class<?> errorClass = error != null ? error.getClass() : Throwable.class;
+        failures.get(stage)
+            .computeIfAbsent(errorClass, key -> new ConcurrentHashMap<>())
+            .computeIfAbsent(tagValue(sourceType), source -> Counter.builder("fhirhub.conversion.failures")
+                .description("Échecs du pipeline de conversion par étape et classe d'exception")
+                .tag("stage", stage.getTag())
+                .tag("exception", errorClass.getSimpleName())
+                .tag("sourceType", source)
+                .register(registry))
+            .increment();
+    }
+
+    /**
+     * Enregistrer une jauge lue à chaque collecte (file d'attente, fichiers en cours...)
+     */
+    public <T> void gauge(String name, String description, T source, ToDoubleFunction<T> value) {
+        if (!enabled) {
+            return;
+        }
+        Gauge.builder(name, source, value)
+            .description(description)
+            .register(registry);
+    }
+
+    private Timer timer(Stage stage, String messageType, String sourceType) {
+        Map<String, Map<String, Timer>> byMessageType = timers.get(stage);
+
+        String messageTag = tagValue(messageType);
+        Map<String, Timer> bySource = byMessageType.get(messageTag);
+        if (bySource == null) {
+            if (byMessageType.size() >= maxMessageTypes) {
+                messageTag = OTHER;
+            }
+            bySource = byMessageType.computeIfAbsent(messageTag, key -> new ConcurrentHashMap<>());
+        }
+
+        String sourceTag = tagValue(sourceType);
+        Timer timer = bySource.get(sourceTag);
+        if (timer == null) {
+            String resolvedMessageTag = messageTag;
+            timer = bySource.computeIfAbsent(sourceTag, source -> Timer.builder("fhirhub.conversion.stage")
+                .description("Durée des étapes du pipeline de conversion")
+                .tag("stage", stage.getTag())
+                .tag("messageType", resolvedMessageTag)
+                .tag("sourceType", source)
+                .publishPercentileHistogram(histograms)
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry));
+        }
+        return timer;
+    }
+
+    private static String tagValue(String value) {
+        return value == null || value.isEmpty() ? NONE : value;
+    }
+}
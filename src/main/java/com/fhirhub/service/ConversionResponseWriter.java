@@ -0,0 +1,78 @@
+package com.fhirhub.service;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fhirhub.model.ConversionResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Écriture de la réponse enveloppe des conversions ({success, messageType, data, ...})
+ * L'enveloppe est écrite à la main autour du bundle, que l'encodeur HAPI
+ * écrit directement dans le flux de sortie : le bundle n'est encodé qu'une fois
+ * et ne passe jamais par une chaîne intermédiaire ni par Jackson.
+ */
+@Component
+@RequiredArgsConstructor
+public class ConversionResponseWriter {
+
+    private final FhirOutputEncoder outputEncoder;
+
+    /**
+     * Écrire la réponse enveloppe d'une conversion
+     * @param logId ID du log de conversion, ou null s'il n'y en a pas
+     */
+    public void writeEnvelope(ConversionResult result, Long logId, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        
+        writer.write("{\"success\":");
+        writer.write(result.isSuccess() ? "true" : "false");
+        writer.write(",\"messageType\":");
+        writeString(writer, result.getMessageType());
+        
+        if (logId != null) {
+            writer.write(",\"logId\":");
+            writer.write(logId.toString());
+        }
+        
+        if (result.isSuccess()) {
+            writer.write(",\"resourceCount\":");
+            writer.write(Integer.toString(result.getResourceCount()));
+            writer.write(",\"data\":");
+            writer.flush();
+            outputEncoder.encode(result, outputEncoder.getDefaultFormat(), out);
+        } else {
+            writer.write(",\"error\":");
+            writeString(writer, result.getError());
+        }
+        
+        writer.write('}');
+        writer.flush();
+    }
+
+    /**
+     * Écrire une réponse enveloppe d'erreur sans conversion
+     */
+    public void writeError(String error, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writer.write("{\"success\":false,\"error\":");
+        writeString(writer, error);
+        writer.write('}');
+        writer.flush();
+    }
+
+    private static void writeString(Writer writer, String value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('"');
+        writer.write(JsonStringEncoder.getInstance().quoteAsString(value));
+        writer.write('"');
+    }
+}
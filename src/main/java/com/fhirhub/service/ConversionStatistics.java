@@ -0,0 +1,196 @@
+package com.fhirhub.service;
+
+import com.fhirhub.model.ConversionLog;
+import com.fhirhub.repository.ConversionLogRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistiques de conversion maintenues en mémoire
+ * 
+ * Initialisées une fois au démarrage depuis la base, puis mises à jour à
+ * chaque log de conversion : /api/stats ne lit plus la table.
+ * La fenêtre glissante de 24 heures est découpée en 1440 cases d'une minute.
+ * Chaque case contient, dans un seul long, la minute (epoch) qu'elle
+ * représente et son compteur, ce qui permet de la recycler par CAS sans verrou.
+ */
+@Component
+@Slf4j
+public class ConversionStatistics {
+
+    private static final int WINDOW_MINUTES = 24 * 60;
+    
+    // 26 bits de minute (epoch, modulo 2^26 soit ~127 ans), 38 bits de compteur
+    private static final int COUNT_BITS = 38;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long MINUTE_MASK = (1L << (64 - COUNT_BITS)) - 1;
+
+    private final ConversionLogRepository conversionLogRepository;
+    private final JdbcTemplate jdbcTemplate;
+    
+    private final LongAdder total = new LongAdder();
+    private final LongAdder successful = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final AtomicLongArray buckets = new AtomicLongArray(WINDOW_MINUTES);
+
+    public ConversionStatistics(ConversionLogRepository conversionLogRepository, JdbcTemplate jdbcTemplate) {
+        this.conversionLogRepository = conversionLogRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Initialiser les compteurs depuis la base
+     */
+    @PostConstruct
+    public void seed() {
+        long start = System.nanoTime();
+        
+        total.add(conversionLogRepository.count());
+        successful.add(conversionLogRepository.countSuccessfulConversions());
+        failed.add(conversionLogRepository.countFailedConversions());
+        seedFromRollups();
+        
+        // Les horodatages sont stockés en millisecondes epoch par sqlite-jdbc
+        long nowMinute = currentMinute();
+        Timestamp since = new Timestamp(TimeUnit.MINUTES.toMillis(nowMinute - WINDOW_MINUTES + 1));
+        jdbcTemplate.query(
+            "SELECT timestamp / 60000 AS minute, COUNT(*) AS count FROM conversion_logs "
+            + "WHERE timestamp >= ? GROUP BY minute",
+            (RowCallbackHandler) rs -> add(rs.getLong("minute"), rs.getLong("count")),
+            since);
+        
+        log.info("Statistiques de conversion initialisées en {} ms: {} conversion(s), {} sur 24h",
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), total.sum(), getConversionsLast24Hours());
+    }
+
+    /**
+     * Ajouter les conversions dont les logs bruts ont été remplacés par des agrégats
+     * (la table n'existe qu'après la migration, au premier démarrage)
+     */
+    private void seedFromRollups() {
+        Integer tables = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = 'conversion_daily_rollups'",
+            Integer.class);
+        if (tables == null || tables == 0) {
+            return;
+        }
+        jdbcTemplate.query("SELECT success, SUM(count) AS count FROM conversion_daily_rollups GROUP BY success",
+            (RowCallbackHandler) rs -> {
+                long count = rs.getLong("count");
+                total.add(count);
+                (rs.getInt("success") != 0 ? successful : failed).add(count);
+            });
+    }
+
+    /**
+     * Prendre en compte un log de conversion
+     */
+    public void record(ConversionLog conversionLog) {
+        total.increment();
+        if (Boolean.TRUE.equals(conversionLog.getSuccess())) {
+            successful.increment();
+        } else {
+            failed.increment();
+        }
+        
+        LocalDateTime timestamp = conversionLog.getTimestamp();
+        add(timestamp != null ? toMinute(timestamp) : currentMinute(), 1);
+    }
+
+    public long getTotalConversions() {
+        return total.sum();
+    }
+
+    public long getSuccessfulConversions() {
+        return successful.sum();
+    }
+
+    public long getFailedConversions() {
+        return failed.sum();
+    }
+
+    /**
+     * Somme des cases de la fenêtre glissante de 24 heures
+     */
+    public long getConversionsLast24Hours() {
+        long nowMinute = currentMinute() & MINUTE_MASK;
+        long count = 0;
+        for (int i = 0; i < WINDOW_MINUTES; i++) {
+            long bucket = buckets.get(i);
+            long age = (nowMinute - (bucket >>> COUNT_BITS)) & MINUTE_MASK;
+            if (age < WINDOW_MINUTES) {
+                count += bucket & COUNT_MASK;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Statistiques au format de /api/stats
+     */
+    public Map<String, Object> snapshot() {
+        long totalConversions = getTotalConversions();
+        long successfulConversions = getSuccessfulConversions();
+        
+        // Calculer le taux de réussite
+        int successRate = totalConversions > 0 
+            ? (int) Math.round((double) successfulConversions / totalConversions * 100)
+            : 0;
+        
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalConversions", totalConversions);
+        stats.put("successfulConversions", successfulConversions);
+        stats.put("failedConversions", getFailedConversions());
+        stats.put("successRate", successRate);
+        stats.put("conversionsLast24Hours", getConversionsLast24Hours());
+        return stats;
+    }
+
+    /**
+     * Ajouter des conversions à la case d'une minute, en la recyclant si
+     * elle contient encore une minute antérieure
+     */
+    private void add(long epochMinute, long count) {
+        long minute = epochMinute & MINUTE_MASK;
+        int index = (int) (epochMinute % WINDOW_MINUTES);
+        while (true) {
+            long bucket = buckets.get(index);
+            long bucketMinute = bucket >>> COUNT_BITS;
+            long updated;
+            if (bucketMinute == minute) {
+                updated = bucket + count;
+            } else if ((bucket & COUNT_MASK) == 0
+                    || ((minute - bucketMinute) & MINUTE_MASK) < (MINUTE_MASK >>> 1)) {
+                updated = (minute << COUNT_BITS) | count;
+            } else {
+                // Case déjà recyclée pour une minute plus récente : conversion hors fenêtre
+                return;
+            }
+            if (buckets.compareAndSet(index, bucket, updated)) {
+                return;
+            }
+        }
+    }
+
+    private static long currentMinute() {
+        return TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+    }
+
+    private static long toMinute(LocalDateTime timestamp) {
+        Instant instant = timestamp.atZone(ZoneId.systemDefault()).toInstant();
+        return TimeUnit.MILLISECONDS.toMinutes(instant.toEpochMilli());
+    }
+}
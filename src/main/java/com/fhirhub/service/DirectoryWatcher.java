@@ -0,0 +1,127 @@
+package com.fhirhub.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.function.Consumer;
+
+/**
+ * Surveillance événementielle d'un répertoire (WatchService / inotify)
+ * Chaque création ou modification de fichier est signalée dès sa réception ;
+ * en cas de débordement de la file d'événements du système (OVERFLOW),
+ * un unique réexamen complet du répertoire est demandé.
+ */
+@Slf4j
+public class DirectoryWatcher implements Closeable {
+
+    private final Path directory;
+    private final Consumer<Path> onFileEvent;
+    private final Runnable onRescan;
+    private final WatchService watchService;
+    private final Thread thread;
+    
+    private volatile boolean running;
+
+    /**
+     * @param directory Répertoire à surveiller
+     * @param onFileEvent Appelé pour chaque fichier créé ou modifié
+     * @param onRescan Appelé au démarrage et après un débordement pour réexaminer tout le répertoire
+     */
+    public DirectoryWatcher(Path directory, Consumer<Path> onFileEvent, Runnable onRescan) throws IOException {
+        this.directory = directory;
+        this.onFileEvent = onFileEvent;
+        this.onRescan = onRescan;
+        this.watchService = directory.getFileSystem().newWatchService();
+        
+        directory.register(watchService,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+        
+        this.thread = new Thread(this::run, "fhirhub-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Démarrer la surveillance
+     */
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Indique si la surveillance est active (sinon la scrutation périodique prend le relais)
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        watchService.close();
+    }
+
+    private void run() {
+        // Fichiers déposés avant le démarrage de la surveillance
+        rescan();
+        
+        while (running) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ClosedWatchServiceException e) {
+                break;
+            }
+            
+            boolean overflow = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    overflow = true;
+                } else if (!overflow) {
+                    // Après un débordement, le réexamen couvre les événements restants
+                    notifyFile(directory.resolve((Path) event.context()));
+                }
+            }
+            
+            if (overflow) {
+                log.warn("Débordement des événements de surveillance, réexamen du répertoire: {}", directory);
+                rescan();
+            }
+            
+            if (!key.reset()) {
+                log.error("Le répertoire surveillé n'est plus accessible: {}", directory);
+                break;
+            }
+        }
+        
+        running = false;
+        log.info("Surveillance événementielle arrêtée: {}", directory);
+    }
+
+    private void notifyFile(Path path) {
+        try {
+            onFileEvent.accept(path);
+        } catch (RuntimeException e) {
+            log.error("Erreur lors du traitement de l'événement pour: {}", path, e);
+        }
+    }
+
+    private void rescan() {
+        try {
+            onRescan.run();
+        } catch (RuntimeException e) {
+            log.error("Erreur lors du réexamen du répertoire: {}", directory, e);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.fhirhub.service;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Index des segments d'un message HL7 brut (ER7)
+ * 
+ * Un seul passage sur le texte relève le début et la fin de chaque segment,
+ * sans rien copier. Les segments restent des tranches du texte d'origine ;
+ * seuls ceux retenus par le plan de mapping sont transmis au parseur HAPI
+ * (les OBX, NTE et segments Z non mappés ne sont jamais matérialisés).
+ */
+public final class Er7SegmentIndex {
+
+    private final String message;
+    private final char fieldSeparator;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int count;
+
+    private Er7SegmentIndex(String message) {
+        this.message = message;
+        this.fieldSeparator = message.length() > 3 ? message.charAt(3) : '|';
+    }
+
+    /**
+     * Indexer un message (segments séparés par \r, \n ou \r\n ; lignes vides ignorées)
+     */
+    public static Er7SegmentIndex of(String message) {
+        Er7SegmentIndex index = new Er7SegmentIndex(message);
+        int length = message.length();
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || message.charAt(i) == '\r' || message.charAt(i) == '\n') {
+                if (i > start) {
+                    index.add(start, i);
+                }
+                start = i + 1;
+            }
+        }
+        return index;
+    }
+
+    private void add(int start, int end) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Tranche brute d'un segment, sans copie
+     */
+    public CharSequence segment(int i) {
+        return CharBuffer.wrap(message, starts[i], ends[i]);
+    }
+
+    /**
+     * Nom du segment sous forme d'entier (trois caractères ASCII), comparable à {@link #code(String)}
+     */
+    public int segmentCode(int i) {
+        int start = starts[i];
+        if (ends[i] - start < 3) {
+            return -1;
+        }
+        return (message.charAt(start) << 16) | (message.charAt(start + 1) << 8) | message.charAt(start + 2);
+    }
+
+    /**
+     * Code entier d'un nom de segment
+     */
+    public static int code(String segmentName) {
+        return (segmentName.charAt(0) << 16) | (segmentName.charAt(1) << 8) | segmentName.charAt(2);
+    }
+
+    /**
+     * Codes entiers triés d'un ensemble de noms de segments, pour {@link #retain(int[])}
+     */
+    public static int[] codes(Collection<String> segmentNames) {
+        int[] codes = new int[segmentNames.size()];
+        int i = 0;
+        for (String name : segmentNames) {
+            codes[i++] = code(name);
+        }
+        Arrays.sort(codes);
+        return codes;
+    }
+
+    /**
+     * Contenu brut d'un champ de MSH (répétitions et composants compris)
+     * @return le champ, ou null s'il est absent ou vide
+     */
+    public String mshField(int fieldNumber) {
+        if (count == 0 || segmentCode(0) != code("MSH")) {
+            return null;
+        }
+        
+        // Dans MSH, le séparateur en position 3 est lui-même MSH-1 :
+        // MSH-N commence après le (N-1)e séparateur
+        int start = starts[0];
+        int end = ends[0];
+        int separator = 1;
+        int position = start + 3;
+        while (position < end && separator < fieldNumber - 1) {
+            position++;
+            while (position < end && message.charAt(position) != fieldSeparator) {
+                position++;
+            }
+            separator++;
+        }
+        if (position >= end) {
+            return null;
+        }
+        
+        int fieldStart = position + 1;
+        int fieldEnd = fieldStart;
+        while (fieldEnd < end && message.charAt(fieldEnd) != fieldSeparator) {
+            fieldEnd++;
+        }
+        return fieldEnd > fieldStart ? message.substring(fieldStart, fieldEnd) : null;
+    }
+
+    /**
+     * Clé de structure du message : MSH-9 (type, événement, structure) et MSH-12 (version)
+     * Deux messages de même clé sont parsés dans la même classe de structure HAPI
+     */
+    public String messageKey() {
+        String messageType = mshField(9);
+        return messageType != null ? messageType + '|' + mshField(12) : null;
+    }
+
+    /**
+     * Reconstruire le message avec MSH et les seuls segments retenus
+     * @param segmentCodes codes triés des segments à conserver
+     */
+    public String retain(int[] segmentCodes) {
+        StringBuilder builder = new StringBuilder(message.length());
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || Arrays.binarySearch(segmentCodes, segmentCode(i)) >= 0) {
+                builder.append(message, starts[i], ends[i]).append('\r');
+            }
+        }
+        return builder.toString();
+    }
+}
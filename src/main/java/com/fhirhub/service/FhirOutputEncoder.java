@@ -0,0 +1,168 @@
+package com.fhirhub.service;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fhirhub.model.ConversionResult;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Moteur d'encodage des ressources FHIR dans les différents formats de sortie
+ * Les parseurs HAPI (non thread-safe) sont réutilisés via un pool par format ;
+ * CBOR et Smile sont obtenus par transcodage en flux du JSON compact.
+ */
+@Component
+public class FhirOutputEncoder {
+
+    private final boolean prettyPrint;
+    private final ConversionMetrics metrics;
+    private final Map<FhirOutputFormat, ObjectPool<IParser>> parserPools = new EnumMap<>(FhirOutputFormat.class);
+    
+    // Fabriques Jackson thread-safe, partagées
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final CBORFactory cborFactory = new CBORFactory();
+    private final SmileFactory smileFactory = new SmileFactory();
+
+    public FhirOutputEncoder(FhirContext fhirContext,
+                             ConversionMetrics metrics,
+                             @Value("${fhirhub.output.pretty-print:false}") boolean prettyPrint,
+                             @Value("${fhirhub.output.encoder-pool.max-idle:64}") int maxIdle) {
+        this.prettyPrint = prettyPrint;
+        this.metrics = metrics;
+        
+        parserPools.put(FhirOutputFormat.JSON, new ObjectPool<>(() -> fhirContext.newJsonParser().setPrettyPrint(false), maxIdle));
+        parserPools.put(FhirOutputFormat.JSON_PRETTY, new ObjectPool<>(() -> fhirContext.newJsonParser().setPrettyPrint(true), maxIdle));
+        parserPools.put(FhirOutputFormat.XML, new ObjectPool<>(() -> fhirContext.newXmlParser().setPrettyPrint(false), maxIdle));
+    }
+
+    /**
+     * Format JSON utilisé par défaut (réponse enveloppe, fichiers de sortie)
+     */
+    public FhirOutputFormat getDefaultFormat() {
+        return prettyPrint ? FhirOutputFormat.JSON_PRETTY : FhirOutputFormat.JSON;
+    }
+
+    /**
+     * Encoder une ressource dans un format texte (JSON ou XML)
+     */
+    public String encodeToString(IBaseResource resource, FhirOutputFormat format) {
+        if (format.isBinary()) {
+            throw new IllegalArgumentException("Format binaire non représentable en texte: " + format);
+        }
+        
+        ObjectPool<IParser> pool = parserPools.get(format);
+        IParser parser = pool.borrow();
+        try {
+            return parser.encodeResourceToString(resource);
+        } finally {
+            pool.release(parser);
+        }
+    }
+
+    /**
+     * Encoder une ressource directement sur un flux de sortie
+     */
+    public void encode(IBaseResource resource, FhirOutputFormat format, OutputStream out) throws IOException {
+        if (format.isBinary()) {
+            transcode(encodeToString(resource, FhirOutputFormat.JSON), format, out);
+            return;
+        }
+        
+        ObjectPool<IParser> pool = parserPools.get(format);
+        IParser parser = pool.borrow();
+        try {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            parser.encodeResourceToWriter(resource, writer);
+            writer.flush();
+        } finally {
+            pool.release(parser);
+        }
+    }
+
+    /**
+     * Encoder le bundle d'un résultat de conversion
+     * Un bundle déjà encodé (cache) est recopié tel quel en JSON compact,
+     * transcodé pour CBOR et Smile, et relu seulement pour les autres formats.
+     * La durée mesurée inclut l'écriture dans le flux de destination.
+     */
+    public void encode(ConversionResult result, FhirOutputFormat format, OutputStream out) throws IOException {
+        long start = metrics.start();
+        try {
+            byte[] encoded = result.getEncodedBundle();
+            if (encoded == null) {
+                encode(result.getBundle(), format, out);
+            } else if (format == FhirOutputFormat.JSON) {
+                out.write(encoded);
+            } else if (format.isBinary()) {
+                transcode(jsonFactory.createParser(encoded), format, out);
+            } else {
+                encode(bundleOf(result), format, out);
+            }
+        } catch (IOException | RuntimeException e) {
+            metrics.failure(ConversionMetrics.Stage.ENCODE, e, result.getSourceType());
+            throw e;
+        }
+        metrics.record(ConversionMetrics.Stage.ENCODE, result.getMessageType(), result.getSourceType(), start);
+    }
+
+    /**
+     * Obtenir le bundle d'un résultat, en le relisant s'il n'est disponible qu'encodé
+     */
+    public Bundle bundleOf(ConversionResult result) {
+        if (result.getBundle() != null || result.getEncodedBundle() == null) {
+            return result.getBundle();
+        }
+        
+        ObjectPool<IParser> pool = parserPools.get(FhirOutputFormat.JSON);
+        IParser parser = pool.borrow();
+        try {
+            return parser.parseResource(Bundle.class,
+                new InputStreamReader(new ByteArrayInputStream(result.getEncodedBundle()), StandardCharsets.UTF_8));
+        } finally {
+            pool.release(parser);
+        }
+    }
+
+    /**
+     * Encoder une ressource en JSON compact (UTF-8)
+     */
+    public byte[] encodeToBytes(IBaseResource resource) {
+        return encodeToString(resource, FhirOutputFormat.JSON).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Transcoder du JSON compact vers CBOR ou Smile, jeton par jeton
+     */
+    private void transcode(String json, FhirOutputFormat format, OutputStream out) throws IOException {
+        transcode(jsonFactory.createParser(json), format, out);
+    }
+
+    private void transcode(JsonParser source, FhirOutputFormat format, OutputStream out) throws IOException {
+        JsonFactory binaryFactory = format == FhirOutputFormat.CBOR ? cborFactory : smileFactory;
+        
+        try (JsonParser jsonParser = source;
+             JsonGenerator generator = binaryFactory.createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            while (jsonParser.nextToken() != null) {
+                generator.copyCurrentEvent(jsonParser);
+            }
+        }
+    }
+}
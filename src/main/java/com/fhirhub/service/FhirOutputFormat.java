@@ -0,0 +1,83 @@
+package com.fhirhub.service;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Formats de sortie FHIR supportés
+ */
+public enum FhirOutputFormat {
+
+    JSON("application/fhir+json", false),
+    JSON_PRETTY("application/fhir+json", false),
+    XML("application/fhir+xml", false),
+    CBOR("application/cbor", true),
+    SMILE("application/x-jackson-smile", true);
+
+    private final String mediaType;
+    private final boolean binary;
+
+    FhirOutputFormat(String mediaType, boolean binary) {
+        this.mediaType = mediaType;
+        this.binary = binary;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Déterminer le format FHIR demandé dans un en-tête Accept
+     * Les types application/json et *&#47;* désignent la réponse enveloppe historique
+     * ({success, data, ...}) : aucun format FHIR brut n'est alors renvoyé.
+     * Le paramètre pretty=true sur application/fhir+json active l'indentation.
+     * application/xml n'est pas retenu : les navigateurs l'envoient par défaut
+     * (application/xml;q=0.9) et doivent recevoir l'enveloppe JSON.
+     */
+    public static Optional<FhirOutputFormat> fromAcceptHeader(String accept) {
+        if (accept == null || accept.trim().isEmpty()) {
+            return Optional.empty();
+        }
+        
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return Optional.empty();
+        }
+        MediaType.sortBySpecificityAndQuality(mediaTypes);
+        
+        for (MediaType mediaType : mediaTypes) {
+            String subtype = mediaType.getSubtype();
+            if (!"application".equals(mediaType.getType())) {
+                if (mediaType.isWildcardType()) {
+                    return Optional.empty();
+                }
+                continue;
+            }
+            switch (subtype) {
+                case "fhir+json":
+                    return Optional.of("true".equalsIgnoreCase(mediaType.getParameter("pretty")) ? JSON_PRETTY : JSON);
+                case "fhir+xml":
+                    return Optional.of(XML);
+                case "cbor":
+                    return Optional.of(CBOR);
+                case "x-jackson-smile":
+                    return Optional.of(SMILE);
+                case "json":
+                case "*":
+                    return Optional.empty();
+                default:
+                    // Type non géré : on passe au suivant
+            }
+        }
+        return Optional.empty();
+    }
+}
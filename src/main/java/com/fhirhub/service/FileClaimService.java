@@ -0,0 +1,210 @@
+package com.fhirhub.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Protocole de prise en charge des fichiers d'entrée : in → processing → done/error
+ * 
+ * Un fichier est pris en charge par un renommage atomique vers le répertoire
+ * processing propre à l'instance : une seule instance peut réussir ce renommage,
+ * ce qui permet à plusieurs instances FHIRHub de partager un même répertoire de dépôt.
+ * Une fois converti, le fichier est déplacé vers done ou error ; le répertoire
+ * d'entrée ne contient donc plus que du travail nouveau.
+ *
+ * Aucun déplacement ne remplace un fichier existant : un nom déjà pris dans le
+ * répertoire cible reçoit un préfixe unique (UUID), y compris si le conflit
+ * survient entre la vérification et le déplacement.
+ */
+@Service
+@Slf4j
+public class FileClaimService {
+
+    private static final int MAX_NAME_ATTEMPTS = 4;
+
+    private final Path processingDir;
+    private final Path doneDir;
+    private final Path errorDir;
+    private final String instanceId;
+
+    public FileClaimService(@Value("${fhirhub.paths.processing-dir:./data/processing}") String processingDir,
+                            @Value("${fhirhub.paths.done-dir:./data/done}") String doneDir,
+                            @Value("${fhirhub.paths.error-dir:./data/error}") String errorDir,
+                            @Value("${fhirhub.instance-id:}") String instanceId) {
+        this.instanceId = instanceId.isEmpty() ? defaultInstanceId() : instanceId;
+        this.processingDir = Paths.get(processingDir, this.instanceId);
+        this.doneDir = Paths.get(doneDir);
+        this.errorDir = Paths.get(errorDir);
+    }
+
+    /**
+     * Créer les répertoires du protocole
+     */
+    public void createDirectories() throws IOException {
+        Files.createDirectories(processingDir);
+        Files.createDirectories(doneDir);
+        Files.createDirectories(errorDir);
+    }
+
+    /**
+     * Vérifier que le répertoire d'entrée et processing sont sur le même système
+     * de fichiers : sinon aucun renommage atomique n'est possible et plusieurs
+     * instances pourraient prendre en charge le même fichier
+     * @throws IllegalStateException si les prises en charge ne peuvent pas être atomiques
+     */
+    public void verifyAtomicClaims(Path inputDir) throws IOException {
+        FileStore inputStore = Files.getFileStore(inputDir);
+        FileStore processingStore = Files.getFileStore(processingDir);
+        if (!inputStore.equals(processingStore)) {
+            throw new IllegalStateException("Les répertoires " + inputDir + " et " + processingDir
+                + " sont sur des systèmes de fichiers différents (" + inputStore + ", " + processingStore
+                + ") : prise en charge atomique des fichiers impossible");
+        }
+    }
+
+    /**
+     * Remettre dans le répertoire d'entrée les fichiers que cette instance avait pris
+     * en charge sans les terminer (arrêt brutal pendant une conversion)
+     * Un fichier déposé entre-temps sous le même nom n'est pas écrasé
+     * @return Nombre de fichiers remis en attente
+     */
+    public int recoverUnfinished(Path inputDir) throws IOException {
+        int recovered = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(processingDir)) {
+            for (Path file : files) {
+                if (!Files.isRegularFile(file)) {
+                    continue;
+                }
+                if (Files.size(file) == 0) {
+                    // Réservation de nom d'une prise en charge interrompue (voir claim) ;
+                    // un fichier réellement vide ne contient de toute façon aucun message
+                    Files.delete(file);
+                    continue;
+                }
+                Path target = moveWithoutReplacing(file, inputDir, file.getFileName().toString());
+                if (!target.getFileName().equals(file.getFileName())) {
+                    log.warn("Fichier {} remis en attente sous le nom {} (nom déjà pris)",
+                        file.getFileName(), target.getFileName());
+                }
+                recovered++;
+            }
+        }
+        
+        if (recovered > 0) {
+            log.warn("{} fichier(s) non terminé(s) remis en attente dans {}", recovered, inputDir);
+        }
+        return recovered;
+    }
+
+    /**
+     * Prendre en charge un fichier du répertoire d'entrée
+     * Sans renommage atomique possible, la prise en charge échoue (IOException)
+     * plutôt que de dégrader la garantie d'exclusivité entre instances.
+     * Le nom cible est d'abord réservé par création exclusive : le renommage
+     * atomique ne remplace alors que cette réservation vide.
+     * @return Le chemin du fichier dans processing, ou vide si une autre instance l'a déjà pris
+     */
+    public Optional<Path> claim(Path inputFile) throws IOException {
+        Path target = reserve(processingDir, inputFile.getFileName().toString());
+        try {
+            Files.move(inputFile, target, StandardCopyOption.ATOMIC_MOVE);
+            return Optional.of(target);
+        } catch (NoSuchFileException e) {
+            // Déjà pris en charge par une autre instance (ou supprimé)
+            Files.deleteIfExists(target);
+            return Optional.empty();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+    }
+
+    /**
+     * Terminer la prise en charge d'un fichier : déplacement vers done ou error
+     */
+    public Path complete(Path claimedFile, boolean success) throws IOException {
+        return moveWithoutReplacing(claimedFile, success ? doneDir : errorDir, claimedFile.getFileName().toString());
+    }
+
+    /**
+     * Identifiant de cette instance (nom du sous-répertoire processing)
+     */
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Réserver un nom libre dans un répertoire par création exclusive d'un fichier vide
+     */
+    private static Path reserve(Path directory, String fileName) throws IOException {
+        FileAlreadyExistsException conflict = null;
+        for (int attempt = 0; attempt < MAX_NAME_ATTEMPTS; attempt++) {
+            Path candidate = candidate(directory, fileName, attempt);
+            try {
+                return Files.createFile(candidate);
+            } catch (FileAlreadyExistsException e) {
+                conflict = e;
+            }
+        }
+        throw conflict;
+    }
+
+    /**
+     * Déplacer un fichier sans jamais remplacer un fichier existant du répertoire cible
+     * Le lien physique échoue si le nom est pris, sans fenêtre de course ; sans lien
+     * possible (autre système de fichiers), déplacement simple sans remplacement
+     * @return Le chemin final du fichier
+     */
+    private static Path moveWithoutReplacing(Path source, Path directory, String fileName) throws IOException {
+        FileAlreadyExistsException conflict = null;
+        for (int attempt = 0; attempt < MAX_NAME_ATTEMPTS; attempt++) {
+            Path candidate = candidate(directory, fileName, attempt);
+            try {
+                Files.createLink(candidate, source);
+            } catch (FileAlreadyExistsException e) {
+                conflict = e;
+                continue;
+            } catch (IOException | UnsupportedOperationException e) {
+                try {
+                    return Files.move(source, candidate);
+                } catch (FileAlreadyExistsException moveConflict) {
+                    conflict = moveConflict;
+                    continue;
+                }
+            }
+            Files.delete(source);
+            return candidate;
+        }
+        throw conflict;
+    }
+
+    /**
+     * Nom d'origine, puis préfixé d'un UUID si ce nom est déjà pris
+     */
+    private static Path candidate(Path directory, String fileName, int attempt) {
+        return directory.resolve(attempt == 0 ? fileName : UUID.randomUUID() + "_" + fileName);
+    }
+
+    private static String defaultInstanceId() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "default";
+        }
+    }
+}
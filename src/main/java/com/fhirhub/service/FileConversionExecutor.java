@@ -0,0 +1,175 @@
+package com.fhirhub.service;
+
+import com.fhirhub.config.ThreadFactories;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool borné de workers pour les conversions de fichiers
+ * 
+ * Sans clé d'ordonnancement, les fichiers sont répartis sur un pool partagé.
+ * Avec une clé (établissement émetteur ou patient), chaque clé est affectée
+ * à une file à un seul worker : les fichiers d'une même clé sont donc
+ * convertis dans leur ordre de soumission.
+ * 
+ * Quand toutes les places (workers + file d'attente) sont prises, submit()
+ * bloque le thread de surveillance jusqu'à ce qu'une place se libère.
+ */
+@Component
+@Slf4j
+public class FileConversionExecutor {
+
+    /**
+     * Clés d'ordonnancement des conversions
+     */
+    public enum OrderingKey {
+        NONE, FACILITY, PATIENT
+    }
+
+    private final int workers;
+    private final int queueCapacity;
+    private final OrderingKey orderingKey;
+    private final boolean virtualThreads;
+    private final ExecutorService[] lanes;
+    private final Semaphore slots;
+    
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+
+    public FileConversionExecutor(@Value("${fhirhub.monitoring.workers:4}") int workers,
+                                  @Value("${fhirhub.monitoring.queue-capacity:1000}") int queueCapacity,
+                                  @Value("${fhirhub.monitoring.ordering-key:none}") String orderingKey,
+                                  @Value("${fhirhub.monitoring.virtual-threads:false}") boolean virtualThreads,
+                                  ConversionMetrics metrics) {
+        this.workers = Math.max(1, workers);
+        this.queueCapacity = Math.max(0, queueCapacity);
+        this.orderingKey = OrderingKey.valueOf(orderingKey.trim().toUpperCase());
+        this.virtualThreads = virtualThreads;
+        this.slots = new Semaphore(this.workers + this.queueCapacity);
+        
+        ThreadFactory threadFactory = ThreadFactories.create("fhirhub-file-worker", virtualThreads);
+        if (this.orderingKey == OrderingKey.NONE) {
+            lanes = new ExecutorService[] {newPool(this.workers, threadFactory)};
+        } else {
+            lanes = new ExecutorService[this.workers];
+            for (int i = 0; i < this.workers; i++) {
+                lanes[i] = newPool(1, threadFactory);
+            }
+        }
+        
+        metrics.gauge("fhirhub.workers.queue.depth", "Fichiers en attente d'un worker", queued, AtomicInteger::get);
+        metrics.gauge("fhirhub.workers.active", "Workers en cours de conversion", active, AtomicInteger::get);
+        
+        log.info("Pool de conversion de fichiers: {} worker(s), file de {} place(s), ordonnancement {}, threads {}",
+            this.workers, this.queueCapacity, this.orderingKey, virtualThreads ? "virtuels" : "de plateforme");
+    }
+
+    /**
+     * Clé d'ordonnancement configurée
+     */
+    public OrderingKey getOrderingKey() {
+        return orderingKey;
+    }
+
+    /**
+     * Soumettre une conversion, en bloquant tant que le pool est saturé
+     * @param key Clé d'ordonnancement (ignorée sans ordonnancement, peut être null)
+     */
+    public void submit(String key, Runnable task) throws InterruptedException {
+        slots.acquire();
+        queued.incrementAndGet();
+        
+        ExecutorService lane = lanes.length == 1 ? lanes[0] : lanes[laneIndex(key)];
+        try {
+            lane.execute(() -> {
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.error("Erreur inattendue dans un worker de conversion", e);
+                } finally {
+                    active.decrementAndGet();
+                    completed.incrementAndGet();
+                    slots.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            queued.decrementAndGet();
+            slots.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Nombre de conversions en attente d'un worker
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * Nombre de workers en cours de conversion
+     */
+    public int getActiveWorkers() {
+        return active.get();
+    }
+
+    /**
+     * État du pool (profondeur de file, occupation des workers)
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("workers", workers);
+        status.put("queueCapacity", queueCapacity);
+        status.put("queueDepth", queued.get());
+        status.put("activeWorkers", active.get());
+        status.put("utilisation", (double) active.get() / workers);
+        status.put("completedTasks", completed.get());
+        status.put("orderingKey", orderingKey.name());
+        status.put("virtualThreads", virtualThreads);
+        return status;
+    }
+
+    /**
+     * Arrêter les workers en laissant les conversions en cours se terminer
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : lanes) {
+            if (!lane.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Des conversions de fichiers étaient encore en cours à l'arrêt");
+                lane.shutdownNow();
+            }
+        }
+    }
+
+    private int laneIndex(String key) {
+        if (key == null) {
+            return 0;
+        }
+        return Math.floorMod(key.hashCode(), lanes.length);
+    }
+
+    private static ExecutorService newPool(int threads, ThreadFactory threadFactory) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), threadFactory);
+    }
+}
@@ -1,25 +1,35 @@
 package com.fhirhub.service;
 
+import com.fhirhub.config.ThreadFactories;
 import com.fhirhub.model.ConversionLog;
+import com.fhirhub.model.ConversionResult;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.hl7.fhir.r4.model.Bundle;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service de surveillance des fichiers HL7 dans un répertoire
@@ -31,6 +41,12 @@ public class FileMonitorService {
 
     private final Hl7ToFhirConverter converter;
     private final ConversionLogService logService;
+    private final FhirOutputEncoder outputEncoder;
+    private final OutputFileWriter outputFileWriter;
+    private final FileConversionExecutor conversionExecutor;
+    private final ProcessedFileLedger ledger;
+    private final FileClaimService claimService;
+    private final ConversionMetrics metrics;
     
     @Value("${fhirhub.paths.input-dir}")
     private String inputDirPath;
@@ -44,8 +60,26 @@ public class FileMonitorService {
     @Value("${fhirhub.monitoring.file-extensions}")
     private List<String> fileExtensions;
     
-    // Map pour suivre les fichiers déjà traités
-    private final Map<String, Long> processedFiles = new ConcurrentHashMap<>();
+    @Value("${fhirhub.monitoring.mode:watch}")
+    private String monitoringMode;
+    
+    @Value("${fhirhub.monitoring.claim-enabled:true}")
+    private boolean claimEnabled;
+    
+    @Value("${fhirhub.monitoring.stability-ms:1000}")
+    private long stabilityMs;
+    
+    // Fichiers soumis aux workers et pas encore inscrits au registre
+    private final Map<String, Boolean> inFlightFiles = new ConcurrentHashMap<>();
+    
+    // Fichiers en cours d'écriture : chemin -> {taille, date de modification, première observation}
+    private final Map<String, long[]> pendingFiles = new ConcurrentHashMap<>();
+    
+    // Surveillance événementielle (null en mode scrutation)
+    private volatile DirectoryWatcher watcher;
+    
+    // Nouvelles vérifications de stabilité des fichiers en cours d'écriture
+    private ScheduledExecutorService stabilityScheduler;
     
     /**
      * Initialiser le service
@@ -54,16 +88,55 @@ public class FileMonitorService {
         // Créer les répertoires s'ils n'existent pas
         createDirectories();
         
+        metrics.gauge("fhirhub.monitor.pending.files", "Fichiers en cours d'écriture, en attente de stabilité",
+            pendingFiles, Map::size);
+        metrics.gauge("fhirhub.monitor.inflight.files", "Fichiers soumis aux workers et pas encore terminés",
+            inFlightFiles, Map::size);
+        
         if (monitoringEnabled) {
             log.info("Surveillance de fichiers activée pour le répertoire: {}", inputDirPath);
             log.info("Extensions de fichiers surveillées: {}", fileExtensions);
+            
+            stabilityScheduler = Executors.newSingleThreadScheduledExecutor(
+                ThreadFactories.create("fhirhub-stability", false));
+            
+            if (claimEnabled) {
+                recoverClaimedFiles();
+            }
+            
+            if ("watch".equalsIgnoreCase(monitoringMode)) {
+                startWatcher();
+            } else {
+                log.info("Mode de surveillance: scrutation périodique");
+            }
         } else {
             log.info("Surveillance de fichiers désactivée");
         }
     }
     
+    /**
+     * Arrêter la surveillance événementielle
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (stabilityScheduler != null) {
+            stabilityScheduler.shutdownNow();
+        }
+        
+        DirectoryWatcher currentWatcher = watcher;
+        if (currentWatcher != null) {
+            try {
+                currentWatcher.close();
+            } catch (IOException e) {
+                log.warn("Erreur lors de l'arrêt de la surveillance: {}", e.getMessage());
+            }
+        }
+    }
+    
     /**
      * Analyser le répertoire d'entrée pour les nouveaux fichiers HL7
+     * En mode événementiel, la scrutation ne sert que de solution de repli
+     * si la surveillance s'est arrêtée
      */
     @Scheduled(fixedDelayString = "${fhirhub.monitoring.polling-interval-ms:5000}")
     public void scanDirectory() {
@@ -71,74 +144,307 @@ public class FileMonitorService {
             return;
         }
         
+        DirectoryWatcher currentWatcher = watcher;
+        if (currentWatcher != null && currentWatcher.isRunning()) {
+            return;
+        }
+        
+        rescan();
+    }
+    
+    /**
+     * Examiner tout le répertoire d'entrée
+     */
+    private void rescan() {
+        Path inputDir = Paths.get(inputDirPath);
+        
+        // Vérifier que le répertoire existe
+        if (!Files.exists(inputDir)) {
+            log.warn("Répertoire d'entrée non trouvé: {}", inputDirPath);
+            return;
+        }
+        
+        // Lister tous les fichiers du répertoire
+        List<Path> candidates;
+        try (Stream<Path> files = Files.list(inputDir)) {
+            candidates = files.collect(Collectors.toList());
+        } catch (IOException e) {
+            log.error("Erreur lors de l'analyse du répertoire", e);
+            return;
+        }
+        
+        // Avec un ordonnancement par clé, soumettre les fichiers dans leur ordre de dépôt
+        if (conversionExecutor.getOrderingKey() != FileConversionExecutor.OrderingKey.NONE) {
+            candidates.sort(Comparator.comparingLong(path -> path.toFile().lastModified()));
+        }
+        
+        // Traiter chaque nouveau fichier
+        for (Path path : candidates) {
+            handleCandidate(path);
+        }
+    }
+    
+    /**
+     * Traiter un fichier du répertoire d'entrée s'il est nouveau, modifié et stable
+     */
+    private void handleCandidate(Path path) {
+        File file = path.toFile();
+        String filePath = file.getAbsolutePath();
+        
+        if (!Files.isRegularFile(path) || !isHl7File(path)) {
+            pendingFiles.remove(filePath);
+            return;
+        }
+        
+        long size = file.length();
+        long lastModified = file.lastModified();
+        
+        // Vérifier si le fichier a déjà été traité, ou s'il est déjà en cours
+        if (inFlightFiles.containsKey(filePath)
+                || (!claimEnabled && ledger.isProcessed(filePath, size, lastModified))) {
+            return;
+        }
+        
+        // Ne pas prendre un fichier que l'émetteur est encore en train d'écrire
+        if (!isStable(path, filePath, size, lastModified)) {
+            return;
+        }
+        
+        if (inFlightFiles.putIfAbsent(filePath, Boolean.TRUE) != null) {
+            return;
+        }
+        
+        if (claimEnabled) {
+            claimAndDispatch(path, filePath);
+        } else {
+            // Le fichier n'est inscrit au registre qu'une fois sa conversion terminée
+            boolean submitted = dispatch(file, success -> {
+                ledger.markProcessed(filePath, size, lastModified);
+                inFlightFiles.remove(filePath);
+            });
+            if (!submitted) {
+                inFlightFiles.remove(filePath);
+            }
+        }
+    }
+    
+    /**
+     * Prendre en charge un fichier (renommage atomique vers processing) puis le convertir
+     * Le fichier est ensuite déplacé vers done ou error selon le résultat
+     */
+    private void claimAndDispatch(Path path, String filePath) {
+        Optional<Path> claimed;
         try {
-            Path inputDir = Paths.get(inputDirPath);
+            claimed = claimService.claim(path);
+        } catch (IOException e) {
+            log.error("Impossible de prendre en charge le fichier: {}", path.getFileName(), e);
+            return;
+        } finally {
+            // Une fois renommé, le fichier n'est plus dans le répertoire d'entrée
+            inFlightFiles.remove(filePath);
+        }
+        
+        if (!claimed.isPresent()) {
+            log.debug("Fichier déjà pris en charge par une autre instance: {}", path.getFileName());
+            return;
+        }
+        
+        Path claimedFile = claimed.get();
+        boolean submitted = dispatch(claimedFile.toFile(), success -> completeClaim(claimedFile, success));
+        if (!submitted) {
+            // Fichier illisible ou soumission interrompue : vers error plutôt que
+            // de rester dans processing et d'échouer à chaque démarrage
+            completeClaim(claimedFile, false);
+        }
+    }
+    
+    private void completeClaim(Path claimedFile, boolean success) {
+        try {
+            Path completed = claimService.complete(claimedFile, success);
+            log.debug("Fichier {} déplacé vers {}", claimedFile.getFileName(), completed.getParent());
+        } catch (IOException e) {
+            log.error("Impossible de déplacer le fichier traité: {}", claimedFile, e);
+        }
+    }
+    
+    /**
+     * Vérifier qu'un fichier n'est plus en cours d'écriture : sa taille et sa date de
+     * modification doivent être restées identiques pendant au moins stability-ms.
+     * Sinon, une nouvelle vérification est planifiée (en mode watch, aucun scan
+     * périodique ne rattraperait un fichier laissé en attente).
+     */
+    private boolean isStable(Path path, String filePath, long size, long lastModified) {
+        if (stabilityMs <= 0) {
+            return true;
+        }
+        
+        long now = System.currentTimeMillis();
+        long nowNanos = System.nanoTime();
+        long[] observed = pendingFiles.get(filePath);
+        
+        if (observed == null && now - lastModified >= stabilityMs) {
+            // Non modifié depuis assez longtemps (fichiers déposés avant le démarrage)
+            return true;
+        }
+        
+        if (observed == null || observed[0] != size || observed[1] != lastModified) {
+            // Début d'observation mesuré avec nanoTime, comme le délai du planificateur
+            pendingFiles.put(filePath, new long[] {size, lastModified, nowNanos});
+            scheduleStabilityCheck(path, stabilityMs);
+            return false;
+        }
+        
+        long remainingMs = stabilityMs - TimeUnit.NANOSECONDS.toMillis(nowNanos - observed[2]);
+        if (remainingMs > 0) {
+            // Vérification anticipée (événement en double) : replanifier pour le temps restant
+            scheduleStabilityCheck(path, remainingMs);
+            return false;
+        }
+        
+        pendingFiles.remove(filePath);
+        return true;
+    }
+    
+    private void scheduleStabilityCheck(Path path, long delayMs) {
+        try {
+            stabilityScheduler.schedule(() -> handleCandidate(path), delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Arrêt en cours
+        }
+    }
+    
+    /**
+     * Soumettre un fichier au pool de workers (bloque si le pool est saturé)
+     * @param onCompleted Appelé par le worker avec le résultat de la conversion
+     * @return false si le fichier n'a pas pu être soumis
+     */
+    private boolean dispatch(File file, Consumer<Boolean> onCompleted) {
+        try {
+            FileConversionExecutor.OrderingKey orderingKey = conversionExecutor.getOrderingKey();
+            String content = null;
+            String key = null;
             
-            // Vérifier que le répertoire existe
-            if (!Files.exists(inputDir)) {
-                log.warn("Répertoire d'entrée non trouvé: {}", inputDirPath);
-                return;
+            if (orderingKey != FileConversionExecutor.OrderingKey.NONE) {
+                // La clé d'ordonnancement est lue dans le message brut, qui est ensuite
+                // transmis au worker pour ne pas relire le fichier
+                content = readFile(file);
+                key = orderingKey == FileConversionExecutor.OrderingKey.FACILITY
+                    ? Hl7RawFields.field(content, "MSH", 4)
+                    : Hl7RawFields.field(content, "PID", 3);
             }
             
-            // Lister tous les fichiers HL7 du répertoire
-            List<File> hl7Files = Files.list(inputDir)
-                .filter(Files::isRegularFile)
-                .filter(this::isHl7File)
-                .map(Path::toFile)
-                .collect(Collectors.toList());
-            
-            // Traiter chaque nouveau fichier
-            for (File file : hl7Files) {
-                String filePath = file.getAbsolutePath();
-                long lastModified = file.lastModified();
-                
-                // Vérifier si le fichier a déjà été traité
-                if (!processedFiles.containsKey(filePath) || processedFiles.get(filePath) < lastModified) {
-                    // Marquer le fichier comme traité
-                    processedFiles.put(filePath, lastModified);
-                    
-                    // Traiter le fichier
-                    processFile(file);
+            String preloadedContent = content;
+            conversionExecutor.submit(key, () -> {
+                CompletableFuture<Boolean> outcome = CompletableFuture.completedFuture(false);
+                try {
+                    outcome = processFile(file, preloadedContent);
+                } finally {
+                    // Le fichier n'est déplacé ou inscrit au registre qu'une fois
+                    // son fichier de sortie durable
+                    outcome.whenComplete((success, error) -> onCompleted.accept(Boolean.TRUE.equals(success)));
                 }
-            }
+            });
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         } catch (IOException e) {
-            log.error("Erreur lors de l'analyse du répertoire", e);
+            log.error("Erreur lors de la lecture du fichier: {}", file.getName(), e);
+            return false;
+        }
+    }
+    
+    /**
+     * Remettre en attente les fichiers que cette instance n'avait pas terminés
+     * Le démarrage est refusé si processing n'est pas sur le système de fichiers
+     * du répertoire d'entrée (prise en charge atomique impossible)
+     */
+    private void recoverClaimedFiles() {
+        try {
+            claimService.createDirectories();
+            claimService.verifyAtomicClaims(Paths.get(inputDirPath));
+            claimService.recoverUnfinished(Paths.get(inputDirPath));
+        } catch (IOException e) {
+            log.error("Erreur lors de la reprise des fichiers en cours de traitement", e);
+        }
+    }
+    
+    /**
+     * État de la surveillance et du pool de workers
+     */
+    public Map<String, Object> getStatus() {
+        DirectoryWatcher currentWatcher = watcher;
+        
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", monitoringEnabled);
+        status.put("mode", currentWatcher != null && currentWatcher.isRunning() ? "watch" : "poll");
+        status.put("trackedFiles", ledger.size());
+        status.put("inFlightFiles", inFlightFiles.size());
+        status.put("pendingFiles", pendingFiles.size());
+        status.put("claimEnabled", claimEnabled);
+        status.put("workers", conversionExecutor.getStatus());
+        return status;
+    }
+    
+    /**
+     * Démarrer la surveillance événementielle du répertoire d'entrée
+     * En cas d'échec, la scrutation périodique reste active
+     */
+    private void startWatcher() {
+        try {
+            DirectoryWatcher directoryWatcher = new DirectoryWatcher(
+                Paths.get(inputDirPath), this::handleCandidate, this::rescan);
+            directoryWatcher.start();
+            watcher = directoryWatcher;
+            log.info("Mode de surveillance: événementiel (WatchService)");
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("Surveillance événementielle indisponible, repli sur la scrutation périodique: {}", e.getMessage());
         }
     }
     
     /**
      * Traiter un fichier HL7
      */
-    public void processFile(File file) {
+    public boolean processFile(File file) {
+        return processFile(file, null).join();
+    }
+    
+    /**
+     * Traiter un fichier HL7 dont le contenu a éventuellement déjà été lu
+     * @return Futur terminé avec true si la conversion a réussi et que le fichier
+     *         de sortie est écrit (et durable selon fhirhub.output.fsync)
+     */
+    private CompletableFuture<Boolean> processFile(File file, String preloadedContent) {
         log.info("Traitement du fichier: {}", file.getName());
         
+        ConversionMetrics.Stage stage = ConversionMetrics.Stage.READ;
         try {
             // Lire le contenu du fichier
-            String content = Files.readString(file.toPath(), StandardCharsets.UTF_8);
+            String content = preloadedContent != null
+                ? preloadedContent
+                : readFile(file);
             
             // Convertir HL7 en FHIR
-            Map<String, Object> result = converter.convertHl7ToFhir(content);
+            ConversionResult result = converter.convertHl7ToFhir(content, "FILE");
             
             // Nom du fichier de sortie
             String outputFileName = getOutputFileName(file.getName());
-            String outputPath = Paths.get(outputDirPath, outputFileName).toString();
             
             // Créer l'entrée de log
-            Boolean success = (Boolean) result.get("success");
             ConversionLog conversionLog = ConversionLog.builder()
                 .inputFile(file.getName())
                 .outputFile(outputFileName)
-                .success(success != null && success)
-                .message(success != null && success ? "Conversion réussie" : "Erreur: " + result.get("error"))
+                .success(result.isSuccess())
+                .message(result.isSuccess() ? "Conversion réussie" : "Erreur: " + result.getError())
                 .build();
             
             // Ajouter des métadonnées supplémentaires au log si disponibles
-            if (result.get("messageType") != null) {
-                conversionLog.setMessageType((String) result.get("messageType"));
+            if (result.getMessageType() != null) {
+                conversionLog.setMessageType(result.getMessageType());
             }
             
-            if (result.get("resourceCount") != null) {
-                conversionLog.setFhirResourceCount(result.get("resourceCount").toString());
+            if (result.isSuccess()) {
+                conversionLog.setFhirResourceCount(Integer.toString(result.getResourceCount()));
             }
             
             // Définir le type de source
@@ -147,37 +453,62 @@ public class FileMonitorService {
             // Enregistrer le log
             logService.logConversion(conversionLog);
             
-            if (success != null && success) {
-                // Créer le répertoire de sortie s'il n'existe pas
-                Files.createDirectories(Paths.get(outputDirPath));
-                
-                // Écrire le résultat FHIR dans un fichier JSON
-                Files.writeString(
-                    Paths.get(outputPath), 
-                    (String) result.get("fhirJson"), 
-                    StandardCharsets.UTF_8
-                );
-                
-                log.info("Conversion réussie, fichier de sortie: {}", outputPath);
-            } else {
-                log.error("Échec de la conversion: {}", result.get("error"));
+            if (!result.isSuccess()) {
+                log.error("Échec de la conversion: {}", result.getError());
+                return CompletableFuture.completedFuture(false);
             }
             
-        } catch (Exception e) {
-            log.error("Erreur lors du traitement du fichier: {}", file.getName(), e);
+            stage = ConversionMetrics.Stage.WRITE_OUTPUT;
+            long start = metrics.start();
             
-            // Enregistrer l'échec dans les logs
-            ConversionLog errorLog = ConversionLog.builder()
-                .inputFile(file.getName())
-                .success(false)
-                .message("Erreur: " + e.getMessage())
-                .sourceType("FILE")
-                .build();
+            // Encoder le bundle FHIR directement dans un fichier temporaire, renommé
+            // atomiquement vers le répertoire de sortie
+            return outputFileWriter
+                .write(outputFileName, out -> outputEncoder.encode(result, outputEncoder.getDefaultFormat(), out))
+                .handle((outputPath, error) -> {
+                    if (error != null) {
+                        logFailure(file, ConversionMetrics.Stage.WRITE_OUTPUT, error);
+                        return false;
+                    }
+                    metrics.record(ConversionMetrics.Stage.WRITE_OUTPUT, result.getMessageType(), "FILE", start);
+                    log.info("Conversion réussie, fichier de sortie: {}", outputPath);
+                    return true;
+                });
             
-            logService.logConversion(errorLog);
+        } catch (Exception e) {
+            logFailure(file, stage, e);
+            return CompletableFuture.completedFuture(false);
         }
     }
     
+    /**
+     * Enregistrer l'échec du traitement d'un fichier
+     */
+    private void logFailure(File file, ConversionMetrics.Stage stage, Throwable e) {
+        log.error("Erreur lors du traitement du fichier: {}", file.getName(), e);
+        metrics.failure(stage, e, "FILE");
+        
+        // Enregistrer l'échec dans les logs
+        ConversionLog errorLog = ConversionLog.builder()
+            .inputFile(file.getName())
+            .success(false)
+            .message("Erreur: " + e.getMessage())
+            .sourceType("FILE")
+            .build();
+        
+        logService.logConversion(errorLog);
+    }
+    
+    /**
+     * Lire le contenu d'un fichier HL7 (étape chronométrée « read »)
+     */
+    private String readFile(File file) throws IOException {
+        long start = metrics.start();
+        String content = Files.readString(file.toPath(), StandardCharsets.UTF_8);
+        metrics.record(ConversionMetrics.Stage.READ, null, "FILE", start);
+        return content;
+    }
+    
     /**
      * Vérifier si un fichier est un fichier HL7 valide
      */
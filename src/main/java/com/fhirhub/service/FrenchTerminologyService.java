@@ -0,0 +1,330 @@
+package com.fhirhub.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Terminologie française (ANS) : OID, autorités d'affectation et libellés
+ *
+ * Les fichiers de french_terminology sont chargés au démarrage dans des tables
+ * immuables dont toutes les chaînes sont internées. Un rechargement construit
+ * un nouvel instantané puis le publie d'un seul coup : les conversions en
+ * cours continuent sur l'ancien, sans verrou. Les recherches n'allouent rien
+ * (clés String dont le hash est mis en cache, tables immuables).
+ *
+ * - ans_oids.json : OID vers URL de système FHIR ; le nom court de chaque
+ *   identifiant (INS-NIR, RPPS, FINESS...) devient une autorité d'affectation
+ * - ans_terminology_systems.json, system_urls.json : nom de système vers URL
+ * - ans_common_codes.json : libellés par catégorie et code
+ *
+ * Chaque rechargement réussi vide le cache des conversions, dont les bundles
+ * portent les systèmes d'identifiant de l'ancien instantané.
+ */
+@Component
+@Slf4j
+public class FrenchTerminologyService {
+
+    public static final String OIDS_FILE = "ans_oids.json";
+    public static final String SYSTEMS_FILE = "ans_terminology_systems.json";
+    public static final String SYSTEM_URLS_FILE = "system_urls.json";
+    public static final String COMMON_CODES_FILE = "ans_common_codes.json";
+
+    private static final String[] FILES = {OIDS_FILE, SYSTEMS_FILE, SYSTEM_URLS_FILE, COMMON_CODES_FILE};
+
+    private static final String FALLBACK_SYSTEM_PREFIX = "http://example.org/fhir/identifier/";
+    private static final String DEFAULT_SYSTEM = FALLBACK_SYSTEM_PREFIX + "mrn";
+    private static final String OID_URN_PREFIX = "urn:oid:";
+    // Systèmes de repli mémorisés par instantané (autorités locales inconnues des tables)
+    private static final int MAX_FALLBACK_ENTRIES = 1024;
+
+    // Autorités usuelles des segments PID français, absentes des noms ANS
+    private static final Map<String, String> AUTHORITY_ALIASES = Map.of(
+        "INS", "INS-NIR",
+        "NIR", "INS-NIR",
+        "NIA", "INS-NIA");
+
+    private final Path directory;
+    private final ConversionCache conversionCache;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong reloadCount = new AtomicLong();
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    // Date de modification des fichiers lors de la dernière tentative (réussie ou non)
+    private volatile long attemptedModified = -1;
+
+    public FrenchTerminologyService(@Value("${fhirhub.terminology.dir:./french_terminology}") String directory,
+                                    ConversionCache conversionCache) {
+        this.directory = Paths.get(directory);
+        this.conversionCache = conversionCache;
+        reload();
+    }
+
+    /**
+     * Service chargé depuis un répertoire (utilisation hors Spring)
+     */
+    public static FrenchTerminologyService fromDirectory(String directory) {
+        return new FrenchTerminologyService(directory, ConversionCache.disabled());
+    }
+
+    /**
+     * Recharger les fichiers et publier le nouvel instantané
+     * En cas d'erreur, l'instantané précédent reste en service
+     * @return true si le rechargement a réussi
+     */
+    public synchronized boolean reload() {
+        attemptedModified = lastModified();
+        try {
+            Snapshot loaded = load();
+            snapshot = loaded;
+            reloadCount.incrementAndGet();
+            conversionCache.invalidateAll();
+            log.info("Terminologie française chargée depuis {}: {} OID, {} autorité(s), {} système(s), {} catégorie(s) de codes",
+                directory, loaded.urlByOid.size(), loaded.systemByAuthority.size(),
+                loaded.urlBySystemName.size(), loaded.displayByCategory.size());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.error("Échec du chargement de la terminologie française depuis {}, tables précédentes conservées", directory, e);
+            return false;
+        }
+    }
+
+    /**
+     * Recharger si l'un des fichiers a été modifié depuis le dernier chargement
+     */
+    @Scheduled(fixedDelayString = "${fhirhub.terminology.reload-check-ms:30000}",
+               initialDelayString = "${fhirhub.terminology.reload-check-ms:30000}")
+    public void reloadIfModified() {
+        if (lastModified() != attemptedModified) {
+            log.info("Fichiers de terminologie modifiés, rechargement");
+            reload();
+        }
+    }
+
+    /**
+     * Système d'identifiant FHIR pour une autorité d'affectation HL7 (CX-4)
+     * Accepte un nom court (INS, RPPS, FINESS...), un OID ou une URL ; une
+     * autorité inconnue donne http://example.org/fhir/identifier/{autorité}
+     */
+    public String systemForAssigningAuthority(String authority) {
+        if (authority == null || authority.isEmpty()) {
+            return DEFAULT_SYSTEM;
+        }
+
+        Snapshot current = snapshot;
+        String system = current.systemByAuthority.get(authority);
+        if (system != null) {
+            return system;
+        }
+        system = current.fallbackSystems.get(authority);
+        if (system != null) {
+            return system;
+        }
+        return current.resolveUncached(authority);
+    }
+
+    /**
+     * URL FHIR d'un OID, ou null s'il est inconnu
+     */
+    public String urlForOid(String oid) {
+        return oid != null ? snapshot.urlByOid.get(oid) : null;
+    }
+
+    /**
+     * URL d'un système de terminologie par son nom (CIM-10-FR, TRE_R316_...), ou null
+     */
+    public String urlForSystemName(String name) {
+        return name != null ? snapshot.urlBySystemName.get(name) : null;
+    }
+
+    /**
+     * Libellé d'un code dans une catégorie (sexe, civilite, qualites...), ou null
+     */
+    public String display(String category, String code) {
+        if (category == null || code == null) {
+            return null;
+        }
+        Map<String, String> displays = snapshot.displayByCategory.get(category);
+        return displays != null ? displays.get(code) : null;
+    }
+
+    public Map<String, Object> getStatus() {
+        Snapshot current = snapshot;
+        Map<String, Object> status = new HashMap<>();
+        status.put("directory", directory.toAbsolutePath().toString());
+        status.put("oids", current.urlByOid.size());
+        status.put("assigningAuthorities", current.systemByAuthority.size());
+        status.put("systems", current.urlBySystemName.size());
+        status.put("codeCategories", current.displayByCategory.size());
+        status.put("reloads", reloadCount.get());
+        return status;
+    }
+
+    private Snapshot load() throws IOException {
+        Map<String, String> strings = new HashMap<>();
+        Map<String, String> urlByOid = new HashMap<>();
+        Map<String, String> systemByAuthority = new HashMap<>();
+        Map<String, String> urlBySystemName = new HashMap<>();
+        Map<String, Map<String, String>> displayByCategory = new HashMap<>();
+
+        JsonNode oids = read(OIDS_FILE).path("identifier_systems");
+        for (Iterator<Map.Entry<String, JsonNode>> it = oids.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> entry = it.next();
+            String oid = entry.getKey();
+            String url = text(entry.getValue(), "fhirEquivalent");
+            if (url == null) {
+                url = OID_URN_PREFIX + oid;
+            }
+            url = intern(strings, url);
+
+            urlByOid.put(intern(strings, oid), url);
+            putAuthority(strings, systemByAuthority, oid, url);
+            putAuthority(strings, systemByAuthority, OID_URN_PREFIX + oid, url);
+            putAuthority(strings, systemByAuthority, url, url);
+
+            // Nom court : « Identifiant National de Santé (INS-NIR) » donne INS-NIR
+            String name = text(entry.getValue(), "name");
+            int open = name != null ? name.lastIndexOf('(') : -1;
+            int close = name != null ? name.lastIndexOf(')') : -1;
+            if (open >= 0 && close > open + 1) {
+                putAuthority(strings, systemByAuthority, name.substring(open + 1, close).trim(), url);
+            }
+        }
+
+        for (Map.Entry<String, String> alias : AUTHORITY_ALIASES.entrySet()) {
+            String url = systemByAuthority.get(alias.getValue());
+            if (url != null) {
+                putAuthority(strings, systemByAuthority, alias.getKey(), url);
+            }
+        }
+
+        JsonNode systems = read(SYSTEMS_FILE).path("systems");
+        for (Iterator<Map.Entry<String, JsonNode>> it = systems.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> entry = it.next();
+            String url = text(entry.getValue(), "url");
+            if (url != null) {
+                urlBySystemName.put(intern(strings, entry.getKey()), intern(strings, url));
+            }
+        }
+
+        JsonNode systemUrls = read(SYSTEM_URLS_FILE);
+        for (Iterator<Map.Entry<String, JsonNode>> it = systemUrls.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> entry = it.next();
+            if (entry.getValue().isTextual()) {
+                urlBySystemName.putIfAbsent(intern(strings, entry.getKey()), intern(strings, entry.getValue().asText()));
+            }
+        }
+
+        JsonNode commonCodes = read(COMMON_CODES_FILE).path("common_codes");
+        for (Iterator<Map.Entry<String, JsonNode>> it = commonCodes.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> category = it.next();
+            Map<String, String> displays = new HashMap<>();
+            for (Iterator<Map.Entry<String, JsonNode>> codes = category.getValue().fields(); codes.hasNext(); ) {
+                Map.Entry<String, JsonNode> code = codes.next();
+                String display = text(code.getValue(), "display");
+                if (display != null) {
+                    displays.put(intern(strings, code.getKey()), intern(strings, display));
+                }
+            }
+            displayByCategory.put(intern(strings, category.getKey()), Map.copyOf(displays));
+        }
+
+        return new Snapshot(Map.copyOf(urlByOid), Map.copyOf(systemByAuthority),
+            Map.copyOf(urlBySystemName), Map.copyOf(displayByCategory));
+    }
+
+    /**
+     * Lire un fichier JSON du répertoire (absent : nœud vide, l'instantané reste utilisable)
+     */
+    private JsonNode read(String fileName) throws IOException {
+        Path file = directory.resolve(fileName);
+        if (!Files.isRegularFile(file)) {
+            log.warn("Fichier de terminologie introuvable: {}", file);
+            return objectMapper.createObjectNode();
+        }
+        return objectMapper.readTree(file.toFile());
+    }
+
+    private long lastModified() {
+        long latest = 0;
+        for (String fileName : FILES) {
+            try {
+                latest = Math.max(latest, Files.getLastModifiedTime(directory.resolve(fileName)).toMillis());
+            } catch (IOException e) {
+                // Fichier absent : ignoré
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Enregistrer une autorité sous sa forme exacte et en majuscules
+     */
+    private static void putAuthority(Map<String, String> strings, Map<String, String> systemByAuthority,
+                                     String authority, String url) {
+        systemByAuthority.putIfAbsent(intern(strings, authority), url);
+        systemByAuthority.putIfAbsent(intern(strings, authority.toUpperCase(Locale.ROOT)), url);
+    }
+
+    /**
+     * Dédoublonner les chaînes de l'instantané puis les interner
+     */
+    private static String intern(Map<String, String> strings, String value) {
+        return strings.computeIfAbsent(value, String::intern);
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value != null && value.isTextual() && !value.asText().isEmpty() ? value.asText() : null;
+    }
+
+    /**
+     * Tables immuables publiées ensemble
+     */
+    private static final class Snapshot {
+        private static final Snapshot EMPTY = new Snapshot(Map.of(), Map.of(), Map.of(), Map.of());
+
+        private final Map<String, String> urlByOid;
+        private final Map<String, String> systemByAuthority;
+        private final Map<String, String> urlBySystemName;
+        private final Map<String, Map<String, String>> displayByCategory;
+        // Seule table mutable : repli des autorités inconnues, bornée, propre à l'instantané
+        private final Map<String, String> fallbackSystems = new ConcurrentHashMap<>();
+
+        private Snapshot(Map<String, String> urlByOid, Map<String, String> systemByAuthority,
+                         Map<String, String> urlBySystemName, Map<String, Map<String, String>> displayByCategory) {
+            this.urlByOid = urlByOid;
+            this.systemByAuthority = systemByAuthority;
+            this.urlBySystemName = urlBySystemName;
+            this.displayByCategory = displayByCategory;
+        }
+
+        /**
+         * Autorité absente de la table exacte : essai en majuscules, sinon système de repli
+         */
+        private String resolveUncached(String authority) {
+            String system = systemByAuthority.get(authority.toUpperCase(Locale.ROOT));
+            if (system == null) {
+                system = FALLBACK_SYSTEM_PREFIX + authority.toLowerCase(Locale.ROOT);
+            }
+            if (fallbackSystems.size() < MAX_FALLBACK_ENTRIES) {
+                fallbackSystems.putIfAbsent(authority, system);
+            }
+            return system;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.fhirhub.service;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Lecteur de fichiers batch HL7 (enveloppes FHS/BHS)
+ * Découpe le flux sur les segments MSH et renvoie les messages un par un,
+ * sans jamais charger plus d'un message en mémoire
+ */
+public class Hl7BatchReader {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final int maxMessageLength;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder segment = new StringBuilder(256);
+    private final StringBuilder message = new StringBuilder(4096);
+    
+    private int position;
+    private int limit;
+    private boolean endOfStream;
+
+    public Hl7BatchReader(Reader reader, int maxMessageLength) {
+        this.reader = reader;
+        this.maxMessageLength = maxMessageLength;
+    }
+
+    /**
+     * Lire le prochain message du batch
+     * @return Le message HL7 (segments séparés par \r), ou null en fin de flux
+     */
+    public String nextMessage() throws IOException {
+        while (readSegment()) {
+            if (isEnvelopeSegment(segment)) {
+                // Les segments FHS/BHS/BTS/FTS ne font partie d'aucun message
+                continue;
+            }
+            
+            if (startsWith(segment, "MSH") && message.length() > 0) {
+                // Début d'un nouveau message : renvoyer le précédent
+                String completed = message.toString();
+                message.setLength(0);
+                message.append(segment).append('\r');
+                return completed;
+            }
+            
+            if (message.length() == 0 && !startsWith(segment, "MSH")) {
+                // Données hors message (avant le premier MSH) : ignorées
+                continue;
+            }
+            
+            if (message.length() + segment.length() + 1 > maxMessageLength) {
+                throw new IOException("Message HL7 trop volumineux (limite: " + maxMessageLength + " caractères)");
+            }
+            message.append(segment).append('\r');
+        }
+        
+        if (message.length() > 0) {
+            String completed = message.toString();
+            message.setLength(0);
+            return completed;
+        }
+        return null;
+    }
+
+    /**
+     * Lire le prochain segment non vide dans le tampon de segment
+     * @return false en fin de flux
+     */
+    private boolean readSegment() throws IOException {
+        segment.setLength(0);
+        
+        while (true) {
+            if (position >= limit) {
+                if (endOfStream || !fill()) {
+                    return segment.length() > 0;
+                }
+            }
+            
+            char c = buffer[position++];
+            if (c == '\r' || c == '\n') {
+                if (segment.length() > 0) {
+                    return true;
+                }
+                // Ligne vide ou \r\n : on continue
+            } else {
+                if (segment.length() >= maxMessageLength) {
+                    throw new IOException("Segment HL7 trop volumineux (limite: " + maxMessageLength + " caractères)");
+                }
+                segment.append(c);
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int read = reader.read(buffer, 0, BUFFER_SIZE);
+        if (read < 0) {
+            endOfStream = true;
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    private static boolean isEnvelopeSegment(CharSequence segment) {
+        return startsWith(segment, "FHS") || startsWith(segment, "BHS")
+            || startsWith(segment, "BTS") || startsWith(segment, "FTS");
+    }
+
+    private static boolean startsWith(CharSequence segment, String name) {
+        if (segment.length() < 3) {
+            return false;
+        }
+        return segment.charAt(0) == name.charAt(0)
+            && segment.charAt(1) == name.charAt(1)
+            && segment.charAt(2) == name.charAt(2)
+            && (segment.length() == 3 || !Character.isLetterOrDigit(segment.charAt(3)));
+    }
+}
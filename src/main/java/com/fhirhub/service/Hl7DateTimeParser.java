@@ -0,0 +1,268 @@
+package com.fhirhub.service;
+
+import ca.uhn.fhir.model.api.TemporalPrecisionEnum;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.DateType;
+
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Parseur des dates HL7 (DTM/TS) vers les types date FHIR
+ * 
+ * Format : YYYY[MM[DD[HH[MM[SS[.S[S[S[S]]]]]]]]][+/-ZZZZ]
+ * Les chiffres sont lus directement dans la séquence de caractères et l'instant
+ * est calculé arithmétiquement : seuls la Date et le type FHIR résultants sont
+ * alloués. La précision FHIR correspond à celle du message (année, mois, jour,
+ * seconde ou milliseconde). Une heure seule ou des minutes sans secondes sont
+ * portées à la seconde : en R4, un dateTime avec heure exige les secondes.
+ * Sans fuseau explicite, la date est interprétée dans le fuseau local.
+ */
+public final class Hl7DateTimeParser {
+
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    // Fuseaux à décalage fixe, par quart d'heure de -12:00 à +14:00
+    private static final int MIN_OFFSET_QUARTERS = -12 * 4;
+    private static final int MAX_OFFSET_QUARTERS = 14 * 4;
+    private static final AtomicReferenceArray<TimeZone> OFFSET_ZONES =
+        new AtomicReferenceArray<>(MAX_OFFSET_QUARTERS - MIN_OFFSET_QUARTERS + 1);
+
+    private Hl7DateTimeParser() {
+    }
+
+    /**
+     * Parser une date (précision année, mois ou jour ; l'heure éventuelle est ignorée)
+     * @throws IllegalArgumentException si la valeur n'est pas une date HL7 valide
+     */
+    public static DateType parseDate(CharSequence value) {
+        Parsed parsed = parse(value);
+        TemporalPrecisionEnum precision = parsed.precision.ordinal() > TemporalPrecisionEnum.DAY.ordinal()
+            ? TemporalPrecisionEnum.DAY
+            : parsed.precision;
+        
+        long localMidnight = epochDay(parsed.year, parsed.month, parsed.day) * MILLIS_PER_DAY;
+        return new DateType(new Date(toUtc(localMidnight, TimeZone.getDefault())), precision);
+    }
+
+    /**
+     * Parser une date/heure avec sa précision et son fuseau
+     * @throws IllegalArgumentException si la valeur n'est pas une date HL7 valide
+     */
+    public static DateTimeType parseDateTime(CharSequence value) {
+        Parsed parsed = parse(value);
+        
+        long local = epochDay(parsed.year, parsed.month, parsed.day) * MILLIS_PER_DAY
+            + parsed.hour * 3_600_000L + parsed.minute * MILLIS_PER_MINUTE
+            + parsed.second * 1000L + parsed.millis;
+        
+        if (parsed.hasOffset) {
+            TimeZone zone = offsetZone(parsed.offsetMinutes);
+            return new DateTimeType(new Date(local - parsed.offsetMinutes * MILLIS_PER_MINUTE), parsed.precision, zone);
+        }
+        
+        TimeZone zone = TimeZone.getDefault();
+        return new DateTimeType(new Date(toUtc(local, zone)), parsed.precision, zone);
+    }
+
+    private static Parsed parse(CharSequence value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Date HL7 absente");
+        }
+        
+        int length = value.length();
+        // Fin de la partie date/heure : début du fuseau éventuel
+        int end = length;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '+' || c == '-') {
+                end = i;
+                break;
+            }
+        }
+        
+        Parsed parsed = new Parsed();
+        parsed.month = 1;
+        parsed.day = 1;
+        
+        int fractionStart = -1;
+        for (int i = 0; i < end; i++) {
+            if (value.charAt(i) == '.') {
+                fractionStart = i;
+                break;
+            }
+        }
+        int digitsEnd = fractionStart >= 0 ? fractionStart : end;
+        
+        switch (digitsEnd) {
+            case 14:
+                parsed.second = digits(value, 12, 2, 0, 59);
+                // fall through
+            case 12:
+                parsed.minute = digits(value, 10, 2, 0, 59);
+                // fall through
+            case 10:
+                parsed.hour = digits(value, 8, 2, 0, 23);
+                // fall through
+            case 8:
+                parsed.day = digits(value, 6, 2, 1, 31);
+                // fall through
+            case 6:
+                parsed.month = digits(value, 4, 2, 1, 12);
+                // fall through
+            case 4:
+                parsed.year = digits(value, 0, 4, 0, 9999);
+                break;
+            default:
+                throw invalid(value);
+        }
+        
+        if (parsed.day > daysInMonth(parsed.year, parsed.month)) {
+            throw invalid(value);
+        }
+        
+        if (digitsEnd == 4) {
+            parsed.precision = TemporalPrecisionEnum.YEAR;
+        } else if (digitsEnd == 6) {
+            parsed.precision = TemporalPrecisionEnum.MONTH;
+        } else if (digitsEnd == 8) {
+            parsed.precision = TemporalPrecisionEnum.DAY;
+        } else {
+            // HH et HHMM : secondes à zéro (TemporalPrecisionEnum.MINUTE produirait
+            // « T08:30+01:00 », invalide en R4)
+            parsed.precision = TemporalPrecisionEnum.SECOND;
+        }
+        
+        // Fraction de seconde : 1 à 4 chiffres, uniquement après les secondes
+        if (fractionStart >= 0) {
+            int fractionDigits = end - fractionStart - 1;
+            if (digitsEnd != 14 || fractionDigits < 1 || fractionDigits > 4) {
+                throw invalid(value);
+            }
+            int millis = 0;
+            for (int i = 0; i < 3; i++) {
+                millis = millis * 10 + (i < fractionDigits ? digit(value, fractionStart + 1 + i) : 0);
+            }
+            if (fractionDigits == 4) {
+                digit(value, fractionStart + 4);
+            }
+            parsed.millis = millis;
+            parsed.precision = TemporalPrecisionEnum.MILLI;
+        }
+        
+        // Fuseau : +/-HHMM
+        if (end < length) {
+            if (length - end != 5) {
+                throw invalid(value);
+            }
+            int hours = digits(value, end + 1, 2, 0, 14);
+            int minutes = digits(value, end + 3, 2, 0, 59);
+            int offset = hours * 60 + minutes;
+            parsed.offsetMinutes = value.charAt(end) == '-' ? -offset : offset;
+            parsed.hasOffset = true;
+        }
+        
+        return parsed;
+    }
+
+    private static int digits(CharSequence value, int start, int count, int min, int max) {
+        int result = 0;
+        for (int i = start; i < start + count; i++) {
+            result = result * 10 + digit(value, i);
+        }
+        if (result < min || result > max) {
+            throw invalid(value);
+        }
+        return result;
+    }
+
+    private static int digit(CharSequence value, int index) {
+        char c = value.charAt(index);
+        if (c < '0' || c > '9') {
+            throw invalid(value);
+        }
+        return c - '0';
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leap ? 29 : 28;
+        }
+        return 30 + ((month + month / 8) & 1);
+    }
+
+    /**
+     * Nombre de jours depuis le 1970-01-01 (calendrier grégorien proleptique)
+     */
+    private static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Convertir une heure locale (en millisecondes) en instant UTC dans un fuseau
+     * Le second calcul corrige le décalage aux changements d'heure ; une heure
+     * inexistante (saut en avant) est décalée après le saut, comme java.time
+     */
+    private static long toUtc(long localMillis, TimeZone zone) {
+        int offset = zone.getOffset(localMillis - zone.getRawOffset());
+        long utc = localMillis - offset;
+        int actualOffset = zone.getOffset(utc);
+        if (actualOffset == offset) {
+            return utc;
+        }
+        long corrected = localMillis - actualOffset;
+        if (zone.getOffset(corrected) == actualOffset) {
+            return corrected;
+        }
+        return localMillis - Math.min(offset, actualOffset);
+    }
+
+    private static TimeZone offsetZone(int offsetMinutes) {
+        int quarters = offsetMinutes / 15;
+        if (offsetMinutes % 15 != 0 || quarters < MIN_OFFSET_QUARTERS || quarters > MAX_OFFSET_QUARTERS) {
+            return newOffsetZone(offsetMinutes);
+        }
+        
+        int index = quarters - MIN_OFFSET_QUARTERS;
+        TimeZone zone = OFFSET_ZONES.get(index);
+        if (zone == null) {
+            zone = newOffsetZone(offsetMinutes);
+            OFFSET_ZONES.compareAndSet(index, null, zone);
+        }
+        return zone;
+    }
+
+    private static TimeZone newOffsetZone(int offsetMinutes) {
+        int absolute = Math.abs(offsetMinutes);
+        return TimeZone.getTimeZone(String.format("GMT%s%02d:%02d",
+            offsetMinutes < 0 ? "-" : "+", absolute / 60, absolute % 60));
+    }
+
+    private static IllegalArgumentException invalid(CharSequence value) {
+        return new IllegalArgumentException("Format de date non reconnu: " + value);
+    }
+
+    /**
+     * Champs lus (alloué une fois par appel, éliminé par l'analyse d'échappement du JIT)
+     */
+    private static final class Parsed {
+        int year;
+        int month;
+        int day;
+        int hour;
+        int minute;
+        int second;
+        int millis;
+        int offsetMinutes;
+        boolean hasOffset;
+        TemporalPrecisionEnum precision;
+    }
+}
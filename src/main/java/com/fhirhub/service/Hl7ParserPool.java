@@ -0,0 +1,114 @@
+package com.fhirhub.service;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.HapiContext;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.parser.ModelClassFactory;
+import ca.uhn.hl7v2.parser.Parser;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Pool de parseurs HL7 réutilisables
+ * Chaque appel emprunte un parseur dédié au thread courant pour la durée du parsing,
+ * au lieu d'en créer un nouveau via hapiContext.getGenericParser() à chaque message.
+ * Les classes du modèle v2.5 et les parseurs sont préchauffés au démarrage.
+ */
+@Component
+@Slf4j
+public class Hl7ParserPool {
+
+    private static final String HL7_VERSION = "2.5";
+
+    // Structures v2.5 dont les classes sont chargées au démarrage
+    private static final String[] V25_STRUCTURES = {
+        "ADT_A01", "ADT_A02", "ADT_A03", "ADT_A05", "ADT_A06", "ADT_A09", "ADT_A12",
+        "ADT_A15", "ADT_A16", "ADT_A17", "ADT_A18", "ADT_A20", "ADT_A21", "ADT_A24",
+        "ADT_A30", "ADT_A37", "ADT_A38", "ADT_A39", "ADT_A43", "ADT_A45", "ADT_A50",
+        "ADT_A52", "ADT_A54", "ADT_A60", "ADT_A61", "ACK"
+    };
+
+    private static final String[] V25_SEGMENTS = {
+        "MSH", "EVN", "PID", "PD1", "NK1", "PV1", "PV2", "AL1", "DG1", "OBX", "NTE", "MRG", "MSA", "ERR"
+    };
+
+    // Message minimal utilisé pour préchauffer chaque parseur
+    private static final String WARMUP_MESSAGE =
+        "MSH|^~\\&|FHIRHUB|FHIRHUB|FHIRHUB|FHIRHUB|20240101000000||ADT^A01^ADT_A01|WARMUP|P|2.5\r"
+        + "PID|||0^^^FHIRHUB||WARMUP^WARMUP||20000101|U\r";
+
+    private final HapiContext hapiContext;
+    private final int warmParsers;
+    private final ObjectPool<Parser> pool;
+
+    public Hl7ParserPool(HapiContext hapiContext,
+                         @Value("${fhirhub.parser-pool.warm-parsers:4}") int warmParsers,
+                         @Value("${fhirhub.parser-pool.max-idle:64}") int maxIdle) {
+        this.hapiContext = hapiContext;
+        this.warmParsers = warmParsers;
+        this.pool = new ObjectPool<>(this::createParser, maxIdle);
+    }
+
+    /**
+     * Charger les classes du modèle v2.5 et préparer les premiers parseurs
+     */
+    @PostConstruct
+    public void warmUp() {
+        long start = System.currentTimeMillis();
+        ModelClassFactory modelClassFactory = hapiContext.getModelClassFactory();
+        
+        for (String structure : V25_STRUCTURES) {
+            try {
+                modelClassFactory.getMessageClass(structure, HL7_VERSION, true);
+            } catch (HL7Exception e) {
+                log.debug("Structure {} indisponible en v{}: {}", structure, HL7_VERSION, e.getMessage());
+            }
+        }
+        for (String segment : V25_SEGMENTS) {
+            try {
+                modelClassFactory.getSegmentClass(segment, HL7_VERSION);
+            } catch (HL7Exception e) {
+                log.debug("Segment {} indisponible en v{}: {}", segment, HL7_VERSION, e.getMessage());
+            }
+        }
+        
+        pool.prefill(warmParsers);
+        log.info("Pool de parseurs HL7 initialisé ({} parseurs préchauffés en {} ms)",
+            warmParsers, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Parser un message HL7 avec un parseur du pool
+     */
+    public Message parse(String hl7Message) throws HL7Exception {
+        Parser parser = pool.borrow();
+        try {
+            return parser.parse(hl7Message);
+        } finally {
+            pool.release(parser);
+        }
+    }
+
+    /**
+     * Nombre de parseurs disponibles dans le pool
+     */
+    public int getIdleCount() {
+        return pool.getIdleCount();
+    }
+
+    /**
+     * Créer un parseur et le préchauffer sur un message minimal
+     */
+    private Parser createParser() {
+        Parser parser = hapiContext.getGenericParser();
+        try {
+            parser.parse(WARMUP_MESSAGE);
+        } catch (HL7Exception e) {
+            log.warn("Échec du préchauffage du parseur HL7: {}", e.getMessage());
+        }
+        return parser;
+    }
+}
@@ -0,0 +1,75 @@
+package com.fhirhub.service;
+
+/**
+ * Lecture de champs directement dans le texte brut d'un message HL7 (ER7),
+ * sans parsing HAPI : utile pour router ou ordonnancer un message avant sa conversion
+ */
+public final class Hl7RawFields {
+
+    private Hl7RawFields() {
+    }
+
+    /**
+     * Lire le premier composant de la première répétition d'un champ
+     * @param message Message HL7 brut (segments séparés par \r ou \n)
+     * @param segmentName Nom du segment (MSH, PID...) ; seule la première occurrence est lue
+     * @param fieldNumber Numéro du champ selon la norme (MSH-4, PID-3...)
+     * @return La valeur, ou null si le segment ou le champ est absent ou vide
+     */
+    public static String field(CharSequence message, String segmentName, int fieldNumber) {
+        int length = message.length();
+        if (length < 8) {
+            return null;
+        }
+        
+        // Séparateurs déclarés dans MSH-1 et MSH-2
+        char fieldSeparator = message.charAt(3);
+        char componentSeparator = message.charAt(4);
+        char repetitionSeparator = message.charAt(5);
+        
+        // Dans MSH, le séparateur de champ est lui-même MSH-1
+        int targetIndex = "MSH".equals(segmentName) ? fieldNumber - 1 : fieldNumber;
+        
+        int segmentStart = 0;
+        while (segmentStart < length) {
+            int segmentEnd = segmentStart;
+            while (segmentEnd < length && message.charAt(segmentEnd) != '\r' && message.charAt(segmentEnd) != '\n') {
+                segmentEnd++;
+            }
+            
+            if (isSegment(message, segmentStart, segmentEnd, segmentName, fieldSeparator)) {
+                int fieldIndex = 0;
+                int position = segmentStart;
+                while (position <= segmentEnd) {
+                    int fieldEnd = position;
+                    while (fieldEnd < segmentEnd && message.charAt(fieldEnd) != fieldSeparator) {
+                        fieldEnd++;
+                    }
+                    if (fieldIndex == targetIndex) {
+                        int valueEnd = position;
+                        while (valueEnd < fieldEnd
+                                && message.charAt(valueEnd) != componentSeparator
+                                && message.charAt(valueEnd) != repetitionSeparator) {
+                            valueEnd++;
+                        }
+                        return valueEnd > position ? message.subSequence(position, valueEnd).toString() : null;
+                    }
+                    fieldIndex++;
+                    position = fieldEnd + 1;
+                }
+                return null;
+            }
+            
+            segmentStart = segmentEnd + 1;
+        }
+        return null;
+    }
+
+    private static boolean isSegment(CharSequence message, int start, int end, String name, char fieldSeparator) {
+        return end - start >= 3
+            && message.charAt(start) == name.charAt(0)
+            && message.charAt(start + 1) == name.charAt(1)
+            && message.charAt(start + 2) == name.charAt(2)
+            && (end - start == 3 || message.charAt(start + 3) == fieldSeparator);
+    }
+}
@@ -0,0 +1,64 @@
+package com.fhirhub.service;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Pool sans verrou d'objets coûteux à créer et non partageables entre threads
+ * (parseurs, encodeurs). Un objet emprunté appartient exclusivement au thread
+ * appelant jusqu'à sa restitution ; le pool est LIFO pour rendre en priorité
+ * les instances les plus récemment utilisées, donc les plus "chaudes".
+ */
+public class ObjectPool<T> {
+
+    private final ConcurrentLinkedDeque<T> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final Supplier<T> factory;
+    private final int maxIdle;
+
+    public ObjectPool(Supplier<T> factory, int maxIdle) {
+        this.factory = factory;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Emprunter une instance (créée à la volée si le pool est vide)
+     */
+    public T borrow() {
+        T instance = idle.pollFirst();
+        if (instance != null) {
+            idleCount.decrementAndGet();
+            return instance;
+        }
+        return factory.get();
+    }
+
+    /**
+     * Restituer une instance empruntée
+     * Au-delà de maxIdle instances inactives, l'instance est abandonnée
+     */
+    public void release(T instance) {
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offerFirst(instance);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Pré-remplir le pool
+     */
+    public void prefill(int count) {
+        for (int i = 0; i < count; i++) {
+            release(factory.get());
+        }
+    }
+
+    /**
+     * Nombre d'instances actuellement disponibles
+     */
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+}
@@ -0,0 +1,319 @@
+package com.fhirhub.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Écriture atomique des fichiers de sortie FHIR
+ *
+ * Le bundle est encodé en flux dans un fichier temporaire caché du répertoire
+ * de sortie, puis renommé atomiquement vers son nom final : un lecteur du
+ * répertoire ne voit jamais de fichier tronqué.
+ *
+ * Durabilité (fhirhub.output.fsync) :
+ * - none : pas de fsync, le système de fichiers vide ses caches à son rythme
+ * - each : fsync du fichier avant le renommage, puis du répertoire
+ * - batched : un thread dédié fsync les fichiers en attente, les renomme, puis
+ *   ne fsync le répertoire qu'une fois par lot ; le futur renvoyé n'est terminé
+ *   qu'une fois le fichier durable
+ *
+ * En mode batched, chaque fichier reste fsyncé individuellement (il n'existe
+ * pas d'équivalent portable de syncfs) : le nombre de fsync de données est le
+ * même qu'en mode each. Seul le fsync du répertoire est mutualisé, et les fsync
+ * sont faits hors du thread appelant ; le coût disque par fichier est inchangé.
+ */
+@Component
+@Slf4j
+public class OutputFileWriter {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Modes de synchronisation sur disque
+     */
+    public enum FsyncMode {
+        NONE, EACH, BATCHED
+    }
+
+    /**
+     * Contenu d'un fichier de sortie, écrit directement dans le flux du fichier temporaire
+     */
+    @FunctionalInterface
+    public interface Body {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private final Path outputDir;
+    private final FsyncMode fsyncMode;
+    private final int batchSize;
+    private final long intervalMs;
+    private final BlockingQueue<PendingFile> pending;
+
+    // Lecture : mise en attente d'un fichier ; écriture : arrêt
+    private final ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
+
+    private Thread syncThread;
+    private volatile boolean running;
+
+    public OutputFileWriter(@Value("${fhirhub.paths.output-dir}") String outputDir,
+                            @Value("${fhirhub.output.fsync:batched}") String fsyncMode,
+                            @Value("${fhirhub.output.fsync-batch-size:256}") int batchSize,
+                            @Value("${fhirhub.output.fsync-interval-ms:20}") long intervalMs,
+                            ConversionMetrics metrics) {
+        this.outputDir = Paths.get(outputDir);
+        this.fsyncMode = FsyncMode.valueOf(fsyncMode.trim().toUpperCase());
+        this.batchSize = Math.max(1, batchSize);
+        this.intervalMs = Math.max(1, intervalMs);
+        // Chaque fichier en attente garde son canal ouvert jusqu'au fsync
+        this.pending = new ArrayBlockingQueue<>(this.batchSize * 4);
+
+        metrics.gauge("fhirhub.output.fsync.pending", "Fichiers de sortie en attente de fsync",
+            pending, BlockingQueue::size);
+    }
+
+    /**
+     * Supprimer les fichiers temporaires laissés par un arrêt brutal et démarrer
+     * le thread de synchronisation groupée
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(outputDir);
+        deleteStaleTempFiles();
+
+        if (fsyncMode == FsyncMode.BATCHED) {
+            running = true;
+            syncThread = new Thread(this::run, "fhirhub-output-fsync");
+            syncThread.setDaemon(true);
+            syncThread.start();
+        }
+
+        log.info("Écriture des fichiers de sortie: renommage atomique, fsync {}", fsyncMode.name().toLowerCase());
+    }
+
+    /**
+     * Arrêter le thread de synchronisation après avoir traité les fichiers en attente
+     * (pas d'interruption : elle fermerait un canal en cours de fsync)
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (syncThread == null) {
+            return;
+        }
+        // Après ce verrou, plus aucun fichier ne peut être mis en attente
+        stateLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        syncThread.join(TimeUnit.SECONDS.toMillis(30));
+        
+        // Fichiers restants si le thread n'a pas terminé à temps
+        List<PendingFile> remaining = new ArrayList<>();
+        pending.drainTo(remaining);
+        syncBatch(remaining);
+    }
+
+    public FsyncMode getFsyncMode() {
+        return fsyncMode;
+    }
+
+    /**
+     * Écrire un fichier de sortie
+     * @param fileName Nom final du fichier dans le répertoire de sortie
+     * @return Futur terminé avec le chemin final une fois le fichier visible
+     *         et, selon le mode, durable
+     */
+    public CompletableFuture<Path> write(String fileName, Body body) throws IOException {
+        Path target = outputDir.resolve(fileName);
+        Path temp = outputDir.resolve("." + fileName + "." + UUID.randomUUID() + TEMP_SUFFIX);
+
+        FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+            body.writeTo(out);
+            out.flush();
+
+            if (fsyncMode == FsyncMode.BATCHED) {
+                PendingFile file = enqueue(channel, temp, target);
+                if (file != null) {
+                    return file.future;
+                }
+            }
+
+            if (fsyncMode != FsyncMode.NONE) {
+                channel.force(false);
+            }
+            channel.close();
+            moveAtomically(temp, target);
+            if (fsyncMode != FsyncMode.NONE) {
+                syncDirectory(outputDir);
+            }
+            return CompletableFuture.completedFuture(target);
+
+        } catch (IOException | RuntimeException e) {
+            discard(channel, temp);
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            discard(channel, temp);
+            throw new IOException("Écriture interrompue: " + fileName, e);
+        }
+    }
+
+    /**
+     * Mettre un fichier en attente de fsync tant que le thread de synchronisation tourne
+     * Le test et l'ajout se font sous le verrou : stop() ne peut pas vider la file entre les deux
+     * @return le fichier en attente, ou null après l'arrêt (l'appelant synchronise lui-même)
+     */
+    private PendingFile enqueue(FileChannel channel, Path temp, Path target) throws InterruptedException {
+        stateLock.readLock().lock();
+        try {
+            if (!running) {
+                return null;
+            }
+            PendingFile file = new PendingFile(channel, temp, target);
+            pending.put(file);
+            return file;
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    private void run() {
+        List<PendingFile> batch = new ArrayList<>(batchSize);
+
+        while (running || !pending.isEmpty()) {
+            try {
+                PendingFile first = pending.poll(intervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                pending.drainTo(batch, batchSize - 1);
+            } catch (InterruptedException e) {
+                // Seul stop() arrête le thread : la file doit continuer d'être vidée
+                log.warn("Interruption ignorée du thread de synchronisation des fichiers de sortie");
+            }
+
+            syncBatch(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * fsync des fichiers du lot, renommage, puis un seul fsync du répertoire
+     */
+    private void syncBatch(List<PendingFile> batch) {
+        List<PendingFile> synced = new ArrayList<>(batch.size());
+        for (PendingFile file : batch) {
+            try {
+                file.channel.force(false);
+                file.channel.close();
+                moveAtomically(file.temp, file.target);
+                synced.add(file);
+            } catch (IOException e) {
+                log.error("Échec de la synchronisation du fichier de sortie: {}", file.target.getFileName(), e);
+                discard(file.channel, file.temp);
+                file.future.completeExceptionally(e);
+            }
+        }
+
+        if (synced.isEmpty()) {
+            return;
+        }
+
+        try {
+            syncDirectory(outputDir);
+            for (PendingFile file : synced) {
+                file.future.complete(file.target);
+            }
+        } catch (IOException e) {
+            log.error("Échec de la synchronisation du répertoire de sortie", e);
+            for (PendingFile file : synced) {
+                file.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void deleteStaleTempFiles() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(outputDir, ".*" + TEMP_SUFFIX)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+                log.warn("Fichier de sortie incomplet supprimé: {}", file.getFileName());
+            }
+        }
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            log.warn("Renommage atomique impossible vers {}, déplacement simple", target);
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Rendre durables les entrées du répertoire (renommages)
+     * Non supporté sur certains systèmes (Windows) : ignoré
+     */
+    private static void syncDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            if (Files.isDirectory(directory)) {
+                log.debug("fsync du répertoire {} non supporté: {}", directory, e.getMessage());
+                return;
+            }
+            throw e;
+        }
+    }
+
+    private static void discard(FileChannel channel, Path temp) {
+        try {
+            channel.close();
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            log.warn("Impossible de supprimer le fichier temporaire: {}", temp, e);
+        }
+    }
+
+    private static final class PendingFile {
+        private final FileChannel channel;
+        private final Path temp;
+        private final Path target;
+        private final CompletableFuture<Path> future = new CompletableFuture<>();
+
+        private PendingFile(FileChannel channel, Path temp, Path target) {
+            this.channel = channel;
+            this.temp = temp;
+            this.target = target;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.fhirhub.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Registre persistant des fichiers déjà convertis
+ * 
+ * Chaque fichier est identifié par son chemin, sa taille et sa date de modification.
+ * Le registre est un journal en ajout seul (une ligne par ajout ou suppression),
+ * rechargé en une passe au démarrage puis compacté dès que le journal devient
+ * nettement plus long que le nombre d'entrées vivantes. Les entrées des fichiers
+ * qui n'existent plus sont évincées périodiquement.
+ * 
+ * Format des lignes : "+ empreinte chemin" ou "- chemin", séparés par des tabulations.
+ */
+@Component
+@Slf4j
+public class ProcessedFileLedger {
+
+    private static final char ADDED = '+';
+    private static final char REMOVED = '-';
+    private static final int MIN_COMPACTION_LINES = 1024;
+
+    private final Path ledgerPath;
+    private final int compactionRatio;
+    
+    // Chemin -> empreinte (taille, date de modification)
+    private final Map<String, Long> entries = new ConcurrentHashMap<>();
+    
+    // Protège le journal et son compteur de lignes
+    private final ReentrantLock journalLock = new ReentrantLock();
+    private Writer journal;
+    private long journalLines;
+
+    public ProcessedFileLedger(@Value("${fhirhub.ledger.path:./data/app_data/processed-files.ledger}") String ledgerPath,
+                               @Value("${fhirhub.ledger.compaction-ratio:2}") int compactionRatio) {
+        this.ledgerPath = Paths.get(ledgerPath);
+        this.compactionRatio = Math.max(2, compactionRatio);
+    }
+
+    /**
+     * Recharger le registre depuis le disque
+     */
+    @PostConstruct
+    public void load() throws IOException {
+        long start = System.currentTimeMillis();
+        Path parent = ledgerPath.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        
+        if (Files.exists(ledgerPath)) {
+            try (BufferedReader reader = Files.newBufferedReader(ledgerPath, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    applyLine(line);
+                    journalLines++;
+                }
+            }
+        }
+        
+        journalLock.lock();
+        try {
+            if (needsCompaction()) {
+                compactLocked();
+            } else {
+                openJournal();
+            }
+        } finally {
+            journalLock.unlock();
+        }
+        
+        log.info("Registre des fichiers traités chargé: {} entrée(s) en {} ms ({})",
+            entries.size(), System.currentTimeMillis() - start, ledgerPath);
+    }
+
+    /**
+     * Indique si ce fichier, dans cet état, a déjà été traité
+     */
+    public boolean isProcessed(String path, long size, long lastModified) {
+        Long fingerprint = entries.get(path);
+        return fingerprint != null && fingerprint == fingerprint(size, lastModified);
+    }
+
+    /**
+     * Enregistrer un fichier comme traité
+     */
+    public void markProcessed(String path, long size, long lastModified) {
+        long fingerprint = fingerprint(size, lastModified);
+        entries.put(path, fingerprint);
+        append(ADDED + "\t" + Long.toHexString(fingerprint) + "\t" + path);
+    }
+
+    /**
+     * Retirer un fichier du registre
+     */
+    public void remove(String path) {
+        if (entries.remove(path) != null) {
+            append(REMOVED + "\t" + path);
+        }
+    }
+
+    /**
+     * Nombre de fichiers suivis
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Évincer les entrées dont le fichier source n'existe plus
+     */
+    @Scheduled(fixedDelayString = "${fhirhub.ledger.eviction-interval-ms:600000}",
+               initialDelayString = "${fhirhub.ledger.eviction-interval-ms:600000}")
+    public void evictMissing() {
+        List<String> missing = new ArrayList<>();
+        for (String path : entries.keySet()) {
+            if (!Files.exists(Paths.get(path))) {
+                missing.add(path);
+            }
+        }
+        
+        for (String path : missing) {
+            remove(path);
+        }
+        
+        if (!missing.isEmpty()) {
+            log.debug("Registre des fichiers traités: {} entrée(s) évincée(s)", missing.size());
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        journalLock.lock();
+        try {
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    private void append(String line) {
+        journalLock.lock();
+        try {
+            if (journal == null) {
+                return;
+            }
+            journal.write(line);
+            journal.write('\n');
+            journal.flush();
+            journalLines++;
+            
+            if (needsCompaction()) {
+                compactLocked();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Écriture impossible dans le registre des fichiers traités", e);
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    private boolean needsCompaction() {
+        return journalLines > MIN_COMPACTION_LINES && journalLines > (long) entries.size() * compactionRatio;
+    }
+
+    /**
+     * Réécrire le journal avec les seules entrées vivantes, puis le remplacer atomiquement
+     */
+    private void compactLocked() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+        
+        Path compacted = ledgerPath.resolveSibling(ledgerPath.getFileName() + ".compact");
+        long lines = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Long> entry : entries.entrySet()) {
+                writer.write(ADDED + "\t" + Long.toHexString(entry.getValue()) + "\t" + entry.getKey());
+                writer.write('\n');
+                lines++;
+            }
+        }
+        Files.move(compacted, ledgerPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journalLines = lines;
+        
+        openJournal();
+        log.debug("Registre des fichiers traités compacté: {} entrée(s)", lines);
+    }
+
+    private void openJournal() throws IOException {
+        journal = Files.newBufferedWriter(ledgerPath, StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private void applyLine(String line) {
+        if (line.length() < 3 || line.charAt(1) != '\t') {
+            return;
+        }
+        
+        if (line.charAt(0) == ADDED) {
+            int separator = line.indexOf('\t', 2);
+            if (separator > 2) {
+                try {
+                    long fingerprint = Long.parseUnsignedLong(line.substring(2, separator), 16);
+                    entries.put(line.substring(separator + 1), fingerprint);
+                } catch (NumberFormatException e) {
+                    log.warn("Ligne invalide ignorée dans le registre des fichiers traités: {}", line);
+                }
+            }
+        } else if (line.charAt(0) == REMOVED) {
+            entries.remove(line.substring(2));
+        }
+    }
+
+    private static long fingerprint(long size, long lastModified) {
+        return size * 0x9E3779B97F4A7C15L ^ lastModified;
+    }
+}
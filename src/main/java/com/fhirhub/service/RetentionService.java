@@ -0,0 +1,173 @@
+package com.fhirhub.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Rétention des logs de conversion
+ * 
+ * Les logs bruts plus anciens que raw-days sont remplacés, jour par jour, par des
+ * agrégats journaliers (nombre de conversions par type de message, source et
+ * résultat). SQLite ne permet pas de supprimer une partition : chaque jour est
+ * agrégé puis supprimé dans une transaction courte bornée par l'index sur
+ * timestamp, ce qui laisse le writer des logs intercaler ses lots.
+ * L'espace libéré est rendu par vacuum incrémental.
+ */
+@Service
+@Slf4j
+public class RetentionService {
+
+    private static final String ROLLUP_SQL =
+        "INSERT INTO conversion_daily_rollups (day, message_type, source_type, success, count) "
+        + "SELECT ?, COALESCE(message_type, ''), COALESCE(source_type, ''), success, COUNT(*) "
+        + "FROM conversion_logs WHERE timestamp >= ? AND timestamp < ? "
+        + "GROUP BY COALESCE(message_type, ''), COALESCE(source_type, ''), success "
+        + "ON CONFLICT (day, message_type, source_type, success) DO UPDATE SET count = count + excluded.count";
+
+    // Agrégation des logs bruts avec les mêmes colonnes que les agrégats
+    private static final String RAW_DAILY_SQL =
+        "SELECT date(timestamp / 1000, 'unixepoch', 'localtime') AS day, "
+        + "COALESCE(message_type, '') AS message_type, COALESCE(source_type, '') AS source_type, "
+        + "success, COUNT(*) AS count FROM conversion_logs WHERE timestamp >= ? AND timestamp < ? "
+        + "GROUP BY day, COALESCE(message_type, ''), COALESCE(source_type, ''), success";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate readJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingCallExecutor blockingCalls;
+
+    @Value("${fhirhub.retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${fhirhub.retention.raw-days:90}")
+    private int rawDays;
+
+    @Value("${fhirhub.retention.vacuum-pages:2000}")
+    private int vacuumPages;
+
+    public RetentionService(@Qualifier("writeDataSource") DataSource dataSource,
+                            @Qualifier("readDataSource") DataSource readDataSource,
+                            BlockingCallExecutor blockingCalls) {
+        this.blockingCalls = blockingCalls;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.readJdbcTemplate = new JdbcTemplate(readDataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    /**
+     * Agréger puis supprimer les jours échus
+     */
+    @Scheduled(cron = "${fhirhub.retention.cron:0 30 2 * * *}")
+    public void applyRetention() {
+        if (!enabled) {
+            return;
+        }
+        
+        Long oldest = jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM conversion_logs", Long.class);
+        if (oldest == null) {
+            return;
+        }
+        
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate cutoff = LocalDate.now(zone).minusDays(rawDays);
+        LocalDate day = Instant.ofEpochMilli(oldest).atZone(zone).toLocalDate();
+        
+        int days = 0;
+        long pruned = 0;
+        for (; day.isBefore(cutoff); day = day.plusDays(1)) {
+            pruned += rollupAndPrune(day, zone);
+            days++;
+        }
+        
+        if (days > 0) {
+            jdbcTemplate.execute("PRAGMA incremental_vacuum(" + vacuumPages + ")");
+            log.info("Rétention: {} jour(s) agrégé(s), {} log(s) brut(s) supprimé(s)", days, pruned);
+        }
+    }
+
+    /**
+     * Agréger un jour puis supprimer ses logs bruts, dans une seule transaction
+     */
+    long rollupAndPrune(LocalDate day, ZoneId zone) {
+        long start = day.atStartOfDay(zone).toInstant().toEpochMilli();
+        long end = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        
+        Integer deleted = transactionTemplate.execute(status -> {
+            jdbcTemplate.update(ROLLUP_SQL, day.toString(), start, end);
+            return jdbcTemplate.update("DELETE FROM conversion_logs WHERE timestamp >= ? AND timestamp < ?", start, end);
+        });
+        return deleted != null ? deleted : 0;
+    }
+
+    /**
+     * Statistiques journalières entre deux dates incluses
+     * Un jour est soit agrégé, soit encore en logs bruts (agrégation et suppression
+     * sont atomiques) : les deux sources s'additionnent sans double comptage
+     */
+    public List<Map<String, Object>> getDailyStats(LocalDate from, LocalDate to) {
+        ZoneId zone = ZoneId.systemDefault();
+        List<Map<String, Object>> rows = new ArrayList<>();
+        
+        blockingCalls.run(() -> {
+            rows.addAll(readJdbcTemplate.queryForList(
+                "SELECT day, message_type, source_type, success, count FROM conversion_daily_rollups "
+                + "WHERE day >= ? AND day <= ?",
+                from.toString(), to.toString()));
+            rows.addAll(readJdbcTemplate.queryForList(RAW_DAILY_SQL,
+                from.atStartOfDay(zone).toInstant().toEpochMilli(),
+                to.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli()));
+        });
+        
+        return groupByDay(rows);
+    }
+
+    /**
+     * Regrouper les lignes par jour : total, réussites, échecs et détail par type et source
+     */
+    private static List<Map<String, Object>> groupByDay(List<Map<String, Object>> rows) {
+        Map<String, Map<String, Object>> days = new TreeMap<>();
+        for (Map<String, Object> row : rows) {
+            String day = String.valueOf(row.get("day"));
+            long count = ((Number) row.get("count")).longValue();
+            boolean success = ((Number) row.get("success")).intValue() != 0;
+            
+            Map<String, Object> summary = days.computeIfAbsent(day, d -> {
+                Map<String, Object> value = new HashMap<>();
+                value.put("day", d);
+                value.put("totalConversions", 0L);
+                value.put("successfulConversions", 0L);
+                value.put("failedConversions", 0L);
+                value.put("byMessageType", new HashMap<String, Long>());
+                value.put("bySourceType", new HashMap<String, Long>());
+                return value;
+            });
+            
+            summary.merge("totalConversions", count, (a, b) -> (Long) a + (Long) b);
+            summary.merge(success ? "successfulConversions" : "failedConversions", count, (a, b) -> (Long) a + (Long) b);
+            
+            @SuppressWarnings("unchecked")
+            Map<String, Long> byMessageType = (Map<String, Long>) summary.get("byMessageType");
+            byMessageType.merge(String.valueOf(row.get("message_type")), count, Long::sum);
+            @SuppressWarnings("unchecked")
+            Map<String, Long> bySourceType = (Map<String, Long>) summary.get("bySourceType");
+            bySourceType.merge(String.valueOf(row.get("source_type")), count, Long::sum);
+        }
+        return new ArrayList<>(days.values());
+    }
+}
@@ -0,0 +1,95 @@
+package com.fhirhub.service;
+
+import com.fhirhub.config.SqliteStorageProfile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tâches de maintenance de la base SQLite
+ */
+@Service
+@Slf4j
+public class SqliteMaintenanceService {
+
+    // Valeur de PRAGMA auto_vacuum en mode incrémental
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private final JdbcTemplate writeJdbcTemplate;
+    private final boolean walEnabled;
+    private final boolean vacuumOnStartup;
+    private final long startupVacuumMaxBytes;
+
+    public SqliteMaintenanceService(@Qualifier("writeDataSource") DataSource writeDataSource,
+                                    SqliteStorageProfile profile,
+                                    @Value("${fhirhub.sqlite.vacuum-on-startup:false}") boolean vacuumOnStartup,
+                                    @Value("${fhirhub.sqlite.startup-vacuum-max-mb:64}") long startupVacuumMaxMb) {
+        this.writeJdbcTemplate = new JdbcTemplate(writeDataSource);
+        this.walEnabled = "WAL".equalsIgnoreCase(profile.getJournalMode());
+        this.vacuumOnStartup = vacuumOnStartup;
+        this.startupVacuumMaxBytes = Math.max(0, startupVacuumMaxMb) * 1024 * 1024;
+    }
+
+    /**
+     * Passer une base existante en vacuum incrémental (requis par la rétention)
+     * Le VACUUM réécrit toute la base en bloquant l'écrivain : il n'est lancé
+     * automatiquement que sous startup-vacuum-max-mb, ou sur demande explicite
+     * (vacuum-on-startup=true, à réserver à une fenêtre de maintenance).
+     * Un échec est journalisé sans interrompre le démarrage.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void enableIncrementalVacuum() {
+        try {
+            Integer mode = writeJdbcTemplate.queryForObject("PRAGMA auto_vacuum", Integer.class);
+            if (mode != null && mode == AUTO_VACUUM_INCREMENTAL) {
+                return;
+            }
+            
+            Long pageCount = writeJdbcTemplate.queryForObject("PRAGMA page_count", Long.class);
+            Long pageSize = writeJdbcTemplate.queryForObject("PRAGMA page_size", Long.class);
+            long sizeBytes = (pageCount != null ? pageCount : 0) * (pageSize != null ? pageSize : 0);
+            
+            if (!vacuumOnStartup && sizeBytes > startupVacuumMaxBytes) {
+                log.warn("Base SQLite de {} Mo sans vacuum incrémental : l'espace libéré par la rétention "
+                    + "ne sera pas rendu. Relancer avec fhirhub.sqlite.vacuum-on-startup=true "
+                    + "pendant une fenêtre de maintenance", sizeBytes / (1024 * 1024));
+                return;
+            }
+            
+            long start = System.nanoTime();
+            writeJdbcTemplate.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            writeJdbcTemplate.execute("VACUUM");
+            log.info("Base SQLite passée en vacuum incrémental en {} ms",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            log.error("Échec du passage de la base SQLite en vacuum incrémental", e);
+        }
+    }
+
+    /**
+     * Reporter le journal WAL dans la base pour en limiter la taille
+     * PASSIVE : ne bloque ni les lecteurs ni l'écrivain
+     */
+    @Scheduled(fixedDelayString = "${fhirhub.sqlite.checkpoint-interval-ms:60000}")
+    public void checkpoint() {
+        if (!walEnabled) {
+            return;
+        }
+        
+        try {
+            Map<String, Object> result = writeJdbcTemplate.queryForMap("PRAGMA wal_checkpoint(PASSIVE)");
+            log.debug("Checkpoint WAL: {}", result);
+        } catch (RuntimeException e) {
+            log.warn("Échec du checkpoint WAL: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.fhirhub.service.mapping;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Segment;
+import com.fhirhub.service.Hl7DateTimeParser;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.r4.model.AllergyIntolerance;
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.springframework.stereotype.Component;
+
+/**
+ * AL1 vers AllergyIntolerance
+ */
+@Component
+@Slf4j
+public class AllergyIntoleranceMapper implements SegmentMapper {
+
+    @Override
+    public String getSegmentName() {
+        return "AL1";
+    }
+
+    @Override
+    public void map(Segment segment, MappingContext context) throws HL7Exception {
+        // AllergyIntolerance.patient est obligatoire
+        if (context.getPatientReference() == null) {
+            return;
+        }
+        
+        AllergyIntolerance allergy = new AllergyIntolerance();
+        allergy.setPatient(context.getPatientReference());
+        
+        // AL1-2 : type d'allergène (table HL7 0127)
+        AllergyIntolerance.AllergyIntoleranceCategory category = category(Hl7Fields.value(segment, 2));
+        if (category != null) {
+            allergy.addCategory(category);
+        }
+        
+        // AL1-3 : allergène
+        CodeableConcept code = Hl7Fields.codeableConcept(segment, 3);
+        if (code != null) {
+            allergy.setCode(code);
+        }
+        
+        // AL1-4 : sévérité (table HL7 0128)
+        String severity = Hl7Fields.value(segment, 4);
+        if ("SV".equals(severity)) {
+            allergy.setCriticality(AllergyIntolerance.AllergyIntoleranceCriticality.HIGH);
+        } else if ("MO".equals(severity) || "MI".equals(severity)) {
+            allergy.setCriticality(AllergyIntolerance.AllergyIntoleranceCriticality.LOW);
+        } else if ("U".equals(severity)) {
+            allergy.setCriticality(AllergyIntolerance.AllergyIntoleranceCriticality.UNABLETOASSESS);
+        }
+        
+        // AL1-5 : réactions (répétables)
+        int reactions = Hl7Fields.repetitions(segment, 5);
+        if (reactions > 0) {
+            AllergyIntolerance.AllergyIntoleranceReactionComponent reaction = allergy.addReaction();
+            for (int i = 0; i < reactions; i++) {
+                String manifestation = Hl7Fields.value(segment, 5, i, 1);
+                if (manifestation != null) {
+                    reaction.addManifestation(new CodeableConcept().setText(manifestation));
+                }
+            }
+        }
+        
+        // AL1-6 : date d'identification
+        String identificationDate = Hl7Fields.value(segment, 6);
+        if (identificationDate != null) {
+            try {
+                allergy.setRecordedDateElement(Hl7DateTimeParser.parseDateTime(identificationDate));
+            } catch (IllegalArgumentException e) {
+                log.warn("Date d'identification d'allergie invalide: {}", identificationDate);
+            }
+        }
+        
+        context.addResource(allergy);
+    }
+
+    private static AllergyIntolerance.AllergyIntoleranceCategory category(String allergenType) {
+        if (allergenType == null) {
+            return null;
+        }
+        switch (allergenType) {
+            case "DA":
+            case "MA":
+                return AllergyIntolerance.AllergyIntoleranceCategory.MEDICATION;
+            case "FA":
+                return AllergyIntolerance.AllergyIntoleranceCategory.FOOD;
+            case "EA":
+            case "AA":
+            case "PA":
+            case "LA":
+                return AllergyIntolerance.AllergyIntoleranceCategory.ENVIRONMENT;
+            default:
+                return null;
+        }
+    }
+}
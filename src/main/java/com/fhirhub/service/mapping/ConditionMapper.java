@@ -0,0 +1,70 @@
+package com.fhirhub.service.mapping;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Segment;
+import com.fhirhub.service.Hl7DateTimeParser;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.Condition;
+import org.springframework.stereotype.Component;
+
+/**
+ * DG1 vers Condition (diagnostic de la venue)
+ */
+@Component
+@Slf4j
+public class ConditionMapper implements SegmentMapper {
+
+    private static final String CATEGORY_SYSTEM = "http://terminology.hl7.org/CodeSystem/condition-category";
+    private static final String VERIFICATION_SYSTEM = "http://terminology.hl7.org/CodeSystem/condition-ver-status";
+
+    @Override
+    public String getSegmentName() {
+        return "DG1";
+    }
+
+    @Override
+    public void map(Segment segment, MappingContext context) throws HL7Exception {
+        // Condition.subject est obligatoire
+        if (context.getPatientReference() == null) {
+            return;
+        }
+        
+        Condition condition = new Condition();
+        condition.setSubject(context.getPatientReference());
+        if (context.getEncounterReference() != null) {
+            condition.setEncounter(context.getEncounterReference());
+        }
+        condition.addCategory().addCoding()
+            .setSystem(CATEGORY_SYSTEM)
+            .setCode("encounter-diagnosis");
+        
+        // DG1-3 : code du diagnostic
+        CodeableConcept code = Hl7Fields.codeableConcept(segment, 3);
+        if (code != null) {
+            condition.setCode(code);
+        }
+        
+        // DG1-5 : date du diagnostic
+        String diagnosisDate = Hl7Fields.value(segment, 5);
+        if (diagnosisDate != null) {
+            try {
+                condition.setRecordedDateElement(Hl7DateTimeParser.parseDateTime(diagnosisDate));
+            } catch (IllegalArgumentException e) {
+                log.warn("Date de diagnostic invalide: {}", diagnosisDate);
+            }
+        }
+        
+        // DG1-6 : type de diagnostic (A admission, W de travail, F final)
+        String diagnosisType = Hl7Fields.value(segment, 6);
+        if ("F".equals(diagnosisType)) {
+            condition.getVerificationStatus().addCoding()
+                .setSystem(VERIFICATION_SYSTEM).setCode("confirmed");
+        } else if ("A".equals(diagnosisType) || "W".equals(diagnosisType)) {
+            condition.getVerificationStatus().addCoding()
+                .setSystem(VERIFICATION_SYSTEM).setCode("provisional");
+        }
+        
+        context.addResource(condition);
+    }
+}
@@ -0,0 +1,126 @@
+package com.fhirhub.service.mapping;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Segment;
+import com.fhirhub.service.Hl7DateTimeParser;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Identifier;
+import org.hl7.fhir.r4.model.Period;
+import org.hl7.fhir.r4.model.Reference;
+import org.springframework.stereotype.Component;
+
+/**
+ * PV1 vers Encounter
+ * Le statut dépend de l'événement ADT (sortie, annulation, pré-admission)
+ */
+@Component
+@Slf4j
+public class EncounterMapper implements SegmentMapper {
+
+    private static final String ACT_CODE_SYSTEM = "http://terminology.hl7.org/CodeSystem/v3-ActCode";
+
+    @Override
+    public String getSegmentName() {
+        return "PV1";
+    }
+
+    @Override
+    public int getOrder() {
+        return 10;
+    }
+
+    @Override
+    public void map(Segment segment, MappingContext context) throws HL7Exception {
+        Encounter encounter = new Encounter();
+        encounter.setStatus(status(context.getTriggerEvent()));
+        encounter.setClass_(encounterClass(Hl7Fields.value(segment, 2)));
+        
+        if (context.getPatientReference() != null) {
+            encounter.setSubject(context.getPatientReference());
+        }
+        
+        // PV1-3 : unité de soins, chambre, lit
+        String pointOfCare = Hl7Fields.value(segment, 3, 1);
+        String room = Hl7Fields.value(segment, 3, 2);
+        String bed = Hl7Fields.value(segment, 3, 3);
+        if (pointOfCare != null || room != null || bed != null) {
+            StringBuilder display = new StringBuilder();
+            for (String part : new String[]{pointOfCare, room, bed}) {
+                if (part != null) {
+                    display.append(display.length() > 0 ? " / " : "").append(part);
+                }
+            }
+            encounter.addLocation().setLocation(new Reference().setDisplay(display.toString()));
+        }
+        
+        // PV1-19 : numéro de venue
+        String visitNumber = Hl7Fields.value(segment, 19);
+        if (visitNumber != null) {
+            encounter.addIdentifier(new Identifier()
+                .setSystem("http://example.org/fhir/identifier/visit")
+                .setValue(visitNumber));
+        }
+        
+        // PV1-44 / PV1-45 : dates d'admission et de sortie
+        Period period = new Period();
+        String admit = Hl7Fields.value(segment, 44);
+        String discharge = Hl7Fields.value(segment, 45);
+        try {
+            if (admit != null) {
+                period.setStartElement(Hl7DateTimeParser.parseDateTime(admit));
+            }
+            if (discharge != null) {
+                period.setEndElement(Hl7DateTimeParser.parseDateTime(discharge));
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("Date de venue invalide: {}", e.getMessage());
+        }
+        if (!period.isEmpty()) {
+            encounter.setPeriod(period);
+        }
+        
+        context.setEncounterReference(context.addResource(encounter));
+    }
+
+    private static Encounter.EncounterStatus status(String triggerEvent) {
+        if (triggerEvent == null) {
+            return Encounter.EncounterStatus.UNKNOWN;
+        }
+        switch (triggerEvent) {
+            case "A03":
+                return Encounter.EncounterStatus.FINISHED;
+            case "A05":
+            case "A14":
+                return Encounter.EncounterStatus.PLANNED;
+            case "A11":
+            case "A27":
+            case "A38":
+                return Encounter.EncounterStatus.CANCELLED;
+            default:
+                return Encounter.EncounterStatus.INPROGRESS;
+        }
+    }
+
+    /**
+     * PV1-2 (classe de patient, table HL7 0004) vers v3-ActCode
+     */
+    private static Coding encounterClass(String patientClass) {
+        if (patientClass == null) {
+            return new Coding(ACT_CODE_SYSTEM, "AMB", "ambulatory");
+        }
+        switch (patientClass) {
+            case "I":
+                return new Coding(ACT_CODE_SYSTEM, "IMP", "inpatient encounter");
+            case "E":
+                return new Coding(ACT_CODE_SYSTEM, "EMER", "emergency");
+            case "P":
+                return new Coding(ACT_CODE_SYSTEM, "PRENC", "pre-admission");
+            case "R":
+                return new Coding(ACT_CODE_SYSTEM, "IMP", "inpatient encounter");
+            default:
+                return new Coding(ACT_CODE_SYSTEM, "AMB", "ambulatory");
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.fhirhub.service.mapping;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Composite;
+import ca.uhn.hl7v2.model.Primitive;
+import ca.uhn.hl7v2.model.Segment;
+import ca.uhn.hl7v2.model.Type;
+import ca.uhn.hl7v2.model.Varies;
+import org.hl7.fhir.r4.model.CodeableConcept;
+
+/**
+ * Lecture des champs HL7 par numéro (champ, répétition, composant)
+ * Passe par l'API générique des segments : les mappers restent déclaratifs
+ * et indépendants des accesseurs propres à chaque version HL7.
+ */
+final class Hl7Fields {
+
+    private static final String CODE_SYSTEM_BASE = "http://example.org/fhir/CodeSystem/";
+
+    private Hl7Fields() {
+    }
+
+    /**
+     * Premier composant de la première répétition d'un champ
+     */
+    static String value(Segment segment, int field) throws HL7Exception {
+        return value(segment, field, 0, 1);
+    }
+
+    /**
+     * Composant (à partir de 1) de la première répétition d'un champ
+     */
+    static String value(Segment segment, int field, int component) throws HL7Exception {
+        return value(segment, field, 0, component);
+    }
+
+    /**
+     * Composant (à partir de 1) d'une répétition (à partir de 0) d'un champ
+     * @return la valeur, ou null si elle est absente ou vide
+     */
+    static String value(Segment segment, int field, int repetition, int component) throws HL7Exception {
+        Type[] repetitions = segment.getField(field);
+        if (repetition >= repetitions.length) {
+            return null;
+        }
+        return component(repetitions[repetition], component);
+    }
+
+    /**
+     * Sous-composant (à partir de 1) d'un composant de la première répétition d'un champ
+     * @return la valeur, ou null si elle est absente ou vide
+     */
+    static String subComponent(Segment segment, int field, int component, int subComponent) throws HL7Exception {
+        Type[] repetitions = segment.getField(field);
+        if (repetitions.length == 0) {
+            return null;
+        }
+        return subComponent(repetitions[0], component, subComponent);
+    }
+
+    /**
+     * Nombre de répétitions présentes d'un champ
+     */
+    static int repetitions(Segment segment, int field) throws HL7Exception {
+        return segment.getField(field).length;
+    }
+
+    /**
+     * Champ codé (CE/CWE) : code, libellé et système
+     */
+    static CodeableConcept codeableConcept(Segment segment, int field) throws HL7Exception {
+        Type[] repetitions = segment.getField(field);
+        return repetitions.length > 0 ? codeableConcept(repetitions[0]) : null;
+    }
+
+    static CodeableConcept codeableConcept(Type type) {
+        String code = component(type, 1);
+        String text = component(type, 2);
+        String system = component(type, 3);
+        if (code == null && text == null) {
+            return null;
+        }
+        
+        CodeableConcept concept = new CodeableConcept();
+        if (code != null) {
+            concept.addCoding()
+                .setSystem(system != null ? CODE_SYSTEM_BASE + system.toLowerCase() : null)
+                .setCode(code)
+                .setDisplay(text);
+        }
+        concept.setText(text);
+        return concept;
+    }
+
+    /**
+     * Sous-composant d'un composant (ex. HD-2 de CX-4) ; un composant simple est son propre premier sous-composant
+     */
+    static String subComponent(Type type, int component, int subComponent) {
+        Type current = type instanceof Varies ? ((Varies) type).getData() : type;
+        
+        if (current instanceof Composite) {
+            Type[] components = ((Composite) current).getComponents();
+            if (component > components.length) {
+                return null;
+            }
+            current = components[component - 1];
+        } else if (component > 1) {
+            return null;
+        }
+        
+        if (current instanceof Varies) {
+            current = ((Varies) current).getData();
+        }
+        if (current instanceof Composite) {
+            Type[] subComponents = ((Composite) current).getComponents();
+            if (subComponent > subComponents.length) {
+                return null;
+            }
+            current = subComponents[subComponent - 1];
+        } else if (subComponent > 1) {
+            return null;
+        }
+        
+        if (current instanceof Varies) {
+            current = ((Varies) current).getData();
+        }
+        if (current instanceof Primitive) {
+            String value = ((Primitive) current).getValue();
+            return value == null || value.isEmpty() ? null : value;
+        }
+        return null;
+    }
+
+    /**
+     * Composant d'une valeur ; un composant lui-même composite donne son premier sous-composant
+     */
+    static String component(Type type, int component) {
+        Type current = type instanceof Varies ? ((Varies) type).getData() : type;
+        
+        if (current instanceof Composite) {
+            Type[] components = ((Composite) current).getComponents();
+            if (component > components.length) {
+                return null;
+            }
+            current = components[component - 1];
+            while (current instanceof Composite) {
+                Type[] subComponents = ((Composite) current).getComponents();
+                if (subComponents.length == 0) {
+                    return null;
+                }
+                current = subComponents[0];
+            }
+        } else if (component > 1) {
+            return null;
+        }
+        
+        if (current instanceof Varies) {
+            current = ((Varies) current).getData();
+        }
+        if (current instanceof Primitive) {
+            String value = ((Primitive) current).getValue();
+            return value == null || value.isEmpty() ? null : value;
+        }
+        return null;
+    }
+}
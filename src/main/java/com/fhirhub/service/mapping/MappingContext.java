@@ -0,0 +1,60 @@
+package com.fhirhub.service.mapping;
+
+import lombok.Getter;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Reference;
+import org.hl7.fhir.r4.model.Resource;
+
+import java.util.UUID;
+
+/**
+ * Contexte du mapping d'un message : bundle en cours de construction
+ * et références vers le patient et la venue déjà mappés
+ */
+@Getter
+public class MappingContext {
+
+    private final Bundle bundle;
+    private final String messageType;
+    private final String triggerEvent;
+    
+    private Reference patientReference;
+    private Reference encounterReference;
+
+    /**
+     * @param messageType type de message au format MSH-9 (ADT_A01)
+     */
+    public MappingContext(Bundle bundle, String messageType) {
+        this.bundle = bundle;
+        this.messageType = messageType;
+        int separator = messageType != null ? messageType.indexOf('_') : -1;
+        this.triggerEvent = separator >= 0 ? messageType.substring(separator + 1) : null;
+    }
+
+    /**
+     * Ajouter une ressource au bundle (création via POST)
+     * @return la référence urn:uuid vers la ressource
+     */
+    public Reference addResource(Resource resource) {
+        String id = UUID.randomUUID().toString();
+        resource.setId(id);
+        String fullUrl = "urn:uuid:" + id;
+        
+        bundle.addEntry()
+            .setResource(resource)
+            .setFullUrl(fullUrl)
+            .getRequest()
+                .setMethod(Bundle.HTTPVerb.POST)
+                .setUrl(resource.fhirType());
+        
+        return new Reference(fullUrl);
+    }
+
+    public void setPatientReference(Reference patientReference) {
+        this.patientReference = patientReference;
+    }
+
+    public void setEncounterReference(Reference encounterReference) {
+        this.encounterReference = encounterReference;
+    }
+}
@@ -0,0 +1,122 @@
+package com.fhirhub.service.mapping;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.GenericMessage;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.parser.DefaultModelClassFactory;
+import ca.uhn.hl7v2.parser.ModelClassFactory;
+import com.fhirhub.service.Er7SegmentIndex;
+import com.fhirhub.service.FrenchTerminologyService;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.r4.model.Bundle;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Moteur de mapping HL7 vers FHIR piloté par tables
+ * 
+ * Chaque classe de structure HL7 (ADT_A01 pour A01/A04/A08/A13, ADT_A03,
+ * ADT_A39 pour A40, ...) reçoit un plan de mapping résolu à son premier
+ * message puis mis en cache : ajouter un segment ou un événement ne coûte
+ * rien par message.
+ */
+@Component
+@Slf4j
+public class MappingEngine {
+
+    private final Map<String, SegmentMapper> mappers = new HashMap<>();
+    private final Map<Class<? extends Message>, MappingPlan> plans = new ConcurrentHashMap<>();
+    // Segments requis par clé de structure brute (MSH-9 et MSH-12), appris au premier message
+    private final Map<String, int[]> requiredSegmentsByKey = new ConcurrentHashMap<>();
+    private final ModelClassFactory modelClassFactory = new DefaultModelClassFactory();
+
+    public MappingEngine(List<SegmentMapper> segmentMappers) {
+        for (SegmentMapper mapper : segmentMappers) {
+            SegmentMapper previous = mappers.put(mapper.getSegmentName(), mapper);
+            if (previous != null) {
+                throw new IllegalStateException("Deux mappers pour le segment " + mapper.getSegmentName());
+            }
+        }
+        log.info("Moteur de mapping initialisé: segments {}", mappers.keySet());
+    }
+
+    /**
+     * Moteur avec les mappers par défaut (utilisation hors Spring)
+     * La terminologie est lue depuis ./french_terminology
+     */
+    public static MappingEngine withDefaultMappers() {
+        return new MappingEngine(Arrays.asList(
+            new PatientMapper(FrenchTerminologyService.fromDirectory("./french_terminology")),
+            new EncounterMapper(),
+            new RelatedPersonMapper(),
+            new AllergyIntoleranceMapper(),
+            new ConditionMapper(),
+            new ObservationMapper()));
+    }
+
+    /**
+     * Mapper un message parsé dans le bundle
+     */
+    public void map(Message message, Bundle bundle, String messageType) throws HL7Exception {
+        planFor(message).execute(message, new MappingContext(bundle, messageType));
+    }
+
+    /**
+     * Obtenir le plan de mapping d'un message
+     * Les messages génériques (structure inconnue) ont une structure propre
+     * à chaque instance : leur plan n'est pas mis en cache
+     */
+    public MappingPlan planFor(Message message) throws HL7Exception {
+        if (message instanceof GenericMessage) {
+            return MappingPlan.build(message, mappers);
+        }
+        
+        MappingPlan plan = plans.get(message.getClass());
+        if (plan == null) {
+            plan = MappingPlan.build(newTemplate(message.getClass()), mappers);
+            MappingPlan existing = plans.putIfAbsent(message.getClass(), plan);
+            if (existing != null) {
+                plan = existing;
+            } else {
+                log.debug("Plan de mapping résolu: {}", plan);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Codes des segments requis pour une clé de structure brute, s'ils sont connus
+     * @see Er7SegmentIndex#messageKey()
+     */
+    public int[] requiredSegments(String messageKey) {
+        return requiredSegmentsByKey.get(messageKey);
+    }
+
+    /**
+     * Associer une clé de structure brute aux segments requis par le plan de son message
+     */
+    public void learn(String messageKey, Message message) throws HL7Exception {
+        if (message instanceof GenericMessage || requiredSegmentsByKey.containsKey(messageKey)) {
+            return;
+        }
+        MappingPlan plan = planFor(message);
+        requiredSegmentsByKey.putIfAbsent(messageKey, Er7SegmentIndex.codes(plan.getRequiredSegments()));
+        log.debug("Parsing sélectif pour {}: segments {}", messageKey, plan.getRequiredSegments());
+    }
+
+    /**
+     * Instance vide de la structure, parcourue pour construire le plan
+     */
+    private Message newTemplate(Class<? extends Message> messageClass) throws HL7Exception {
+        try {
+            return messageClass.getConstructor(ModelClassFactory.class).newInstance(modelClassFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new HL7Exception("Structure de message non instanciable: " + messageClass.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.fhirhub.service.mapping;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Group;
+import ca.uhn.hl7v2.model.Segment;
+import ca.uhn.hl7v2.model.Structure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plan de mapping d'une structure de message HL7
+ * 
+ * Liste précalculée des chemins (groupes puis segment) vers chaque segment
+ * pris en charge, avec son mapper. Le plan est construit une fois à partir de
+ * la définition de la structure ; son exécution ne fait que parcourir les
+ * répétitions présentes, sans introspection.
+ */
+public final class MappingPlan {
+
+    private final String structureName;
+    private final List<Step> steps;
+    private final Set<String> requiredSegments;
+
+    private MappingPlan(String structureName, List<Step> steps, Set<String> requiredSegments) {
+        this.structureName = structureName;
+        this.steps = steps;
+        this.requiredSegments = Collections.unmodifiableSet(requiredSegments);
+    }
+
+    /**
+     * Construire le plan en parcourant la définition d'une structure
+     * @param structure instance servant de modèle (non modifiée si elle est vide)
+     */
+    static MappingPlan build(Group structure, Map<String, SegmentMapper> mappers) throws HL7Exception {
+        List<Step> steps = new ArrayList<>();
+        Set<String> requiredSegments = new LinkedHashSet<>();
+        requiredSegments.add("MSH");
+        collect(structure, new ArrayList<>(), new ArrayList<>(), mappers, steps, requiredSegments);
+        // Tri stable : ordre des mappers, puis ordre de la structure
+        steps.sort(Comparator.comparingInt(step -> step.mapper.getOrder()));
+        return new MappingPlan(structure.getName(), steps, requiredSegments);
+    }
+
+    /**
+     * @param anchors premier segment de chaque groupe englobant : le parseur en a
+     *                besoin pour ouvrir le groupe d'un segment mappé
+     */
+    private static void collect(Group group, List<String> path, List<String> anchors,
+                                Map<String, SegmentMapper> mappers, List<Step> steps,
+                                Set<String> requiredSegments) throws HL7Exception {
+        for (String name : group.getNames()) {
+            List<String> childPath = new ArrayList<>(path);
+            childPath.add(name);
+            
+            if (Group.class.isAssignableFrom(group.getClass(name))) {
+                Group child = (Group) group.get(name);
+                List<String> childAnchors = new ArrayList<>(anchors);
+                String anchor = firstSegment(child);
+                if (anchor != null) {
+                    childAnchors.add(anchor);
+                }
+                collect(child, childPath, childAnchors, mappers, steps, requiredSegments);
+            } else {
+                // Les segments répétés dans la structure sont nommés ROL2, OBX2, ...
+                SegmentMapper mapper = mappers.get(name.substring(0, 3));
+                if (mapper != null) {
+                    steps.add(new Step(childPath.toArray(new String[0]), mapper));
+                    requiredSegments.addAll(anchors);
+                    requiredSegments.add(mapper.getSegmentName());
+                }
+            }
+        }
+    }
+
+    private static String firstSegment(Group group) throws HL7Exception {
+        String[] names = group.getNames();
+        if (names.length == 0) {
+            return null;
+        }
+        if (Group.class.isAssignableFrom(group.getClass(names[0]))) {
+            return firstSegment((Group) group.get(names[0]));
+        }
+        return names[0].substring(0, 3);
+    }
+
+    /**
+     * Exécuter le plan sur un message
+     */
+    void execute(Group message, MappingContext context) throws HL7Exception {
+        for (Step step : steps) {
+            visit(message, step, 0, context);
+        }
+    }
+
+    private static void visit(Group group, Step step, int depth, MappingContext context) throws HL7Exception {
+        Structure[] repetitions = group.getAll(step.path[depth]);
+        boolean last = depth == step.path.length - 1;
+        
+        for (Structure repetition : repetitions) {
+            if (repetition.isEmpty()) {
+                continue;
+            }
+            if (last) {
+                step.mapper.map((Segment) repetition, context);
+            } else {
+                visit((Group) repetition, step, depth + 1, context);
+            }
+        }
+    }
+
+    public String getStructureName() {
+        return structureName;
+    }
+
+    /**
+     * Segments à conserver pour un parsing sélectif : MSH, segments mappés
+     * et premiers segments des groupes qui les contiennent
+     */
+    public Set<String> getRequiredSegments() {
+        return requiredSegments;
+    }
+
+    /**
+     * Noms des segments mappés, dans l'ordre d'exécution
+     */
+    public List<String> getSegmentNames() {
+        List<String> names = new ArrayList<>();
+        for (Step step : steps) {
+            String segmentName = step.mapper.getSegmentName();
+            if (!names.contains(segmentName)) {
+                names.add(segmentName);
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public String toString() {
+        List<String> paths = new ArrayList<>();
+        for (Step step : steps) {
+            paths.add(String.join("/", step.path));
+        }
+        return structureName + " " + paths;
+    }
+
+    /**
+     * Étape du plan : chemin vers un segment et son mapper
+     */
+    private static final class Step {
+        final String[] path;
+        final SegmentMapper mapper;
+
+        Step(String[] path, SegmentMapper mapper) {
+            this.path = path;
+            this.mapper = mapper;
+        }
+    }
+}
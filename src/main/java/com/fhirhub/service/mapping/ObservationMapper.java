@@ -0,0 +1,143 @@
+package com.fhirhub.service.mapping;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Segment;
+import ca.uhn.hl7v2.model.Type;
+import com.fhirhub.service.Hl7DateTimeParser;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Quantity;
+import org.hl7.fhir.r4.model.StringType;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+/**
+ * OBX vers Observation
+ * La valeur (OBX-5) est typée selon OBX-2 : NM en Quantity, CE/CWE en
+ * CodeableConcept, dates en dateTime, le reste en texte
+ */
+@Component
+@Slf4j
+public class ObservationMapper implements SegmentMapper {
+
+    @Override
+    public String getSegmentName() {
+        return "OBX";
+    }
+
+    @Override
+    public void map(Segment segment, MappingContext context) throws HL7Exception {
+        Observation observation = new Observation();
+        observation.setStatus(status(Hl7Fields.value(segment, 11)));
+        
+        // OBX-3 : code de l'observation (obligatoire en FHIR)
+        CodeableConcept code = Hl7Fields.codeableConcept(segment, 3);
+        observation.setCode(code != null ? code : new CodeableConcept().setText("Observation"));
+        
+        if (context.getPatientReference() != null) {
+            observation.setSubject(context.getPatientReference());
+        }
+        if (context.getEncounterReference() != null) {
+            observation.setEncounter(context.getEncounterReference());
+        }
+        
+        setValue(observation, segment, Hl7Fields.value(segment, 2));
+        
+        // OBX-7 : valeurs de référence
+        String referenceRange = Hl7Fields.value(segment, 7);
+        if (referenceRange != null) {
+            observation.addReferenceRange().setText(referenceRange);
+        }
+        
+        // OBX-14 : date de l'observation
+        String observationDate = Hl7Fields.value(segment, 14);
+        if (observationDate != null) {
+            try {
+                observation.setEffective(Hl7DateTimeParser.parseDateTime(observationDate));
+            } catch (IllegalArgumentException e) {
+                log.warn("Date d'observation invalide: {}", observationDate);
+            }
+        }
+        
+        context.addResource(observation);
+    }
+
+    private static void setValue(Observation observation, Segment segment, String valueType) throws HL7Exception {
+        Type[] values = segment.getField(5);
+        if (values.length == 0) {
+            return;
+        }
+        
+        String value = Hl7Fields.component(values[0], 1);
+        if (value == null) {
+            return;
+        }
+        
+        switch (valueType != null ? valueType : "") {
+            case "NM":
+                try {
+                    Quantity quantity = new Quantity().setValue(new BigDecimal(value.trim()));
+                    // OBX-6 : unité
+                    String unit = Hl7Fields.value(segment, 6);
+                    if (unit != null) {
+                        quantity.setUnit(unit);
+                    }
+                    observation.setValue(quantity);
+                } catch (NumberFormatException e) {
+                    observation.setValue(new StringType(value));
+                }
+                break;
+            case "CE":
+            case "CWE":
+                observation.setValue(Hl7Fields.codeableConcept(values[0]));
+                break;
+            case "DT":
+            case "TS":
+            case "DTM":
+                try {
+                    observation.setValue(Hl7DateTimeParser.parseDateTime(value));
+                } catch (IllegalArgumentException e) {
+                    observation.setValue(new StringType(value));
+                }
+                break;
+            default:
+                // ST, TX, FT et types non gérés : répétitions concaténées
+                StringBuilder text = new StringBuilder(value);
+                for (int i = 1; i < values.length; i++) {
+                    String repetition = Hl7Fields.component(values[i], 1);
+                    if (repetition != null) {
+                        text.append('\n').append(repetition);
+                    }
+                }
+                observation.setValue(new StringType(text.toString()));
+        }
+    }
+
+    /**
+     * OBX-11 (statut du résultat, table HL7 0085)
+     */
+    private static Observation.ObservationStatus status(String resultStatus) {
+        if (resultStatus == null) {
+            return Observation.ObservationStatus.FINAL;
+        }
+        switch (resultStatus) {
+            case "P":
+            case "S":
+                return Observation.ObservationStatus.PRELIMINARY;
+            case "C":
+                return Observation.ObservationStatus.CORRECTED;
+            case "X":
+                return Observation.ObservationStatus.CANCELLED;
+            case "W":
+            case "D":
+                return Observation.ObservationStatus.ENTEREDINERROR;
+            case "I":
+            case "R":
+                return Observation.ObservationStatus.REGISTERED;
+            default:
+                return Observation.ObservationStatus.FINAL;
+        }
+    }
+}
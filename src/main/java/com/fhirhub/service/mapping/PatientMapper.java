@@ -0,0 +1,161 @@
+package com.fhirhub.service.mapping;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Segment;
+import com.fhirhub.service.FrenchTerminologyService;
+import com.fhirhub.service.Hl7DateTimeParser;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hl7.fhir.r4.model.*;
+import org.springframework.stereotype.Component;
+
+/**
+ * PID vers Patient
+ * Le patient est mappé en premier : les autres ressources le référencent
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PatientMapper implements SegmentMapper {
+
+    private final FrenchTerminologyService terminology;
+
+    @Override
+    public String getSegmentName() {
+        return "PID";
+    }
+
+    @Override
+    public int getOrder() {
+        return 0;
+    }
+
+    @Override
+    public void map(Segment segment, MappingContext context) throws HL7Exception {
+        Patient patient = createPatient(segment);
+        context.setPatientReference(context.addResource(patient));
+    }
+    
+    /**
+     * Créer une ressource Patient FHIR à partir d'un segment PID HL7
+     * Lecture par numéro de champ : fonctionne quelle que soit la version HL7 (GenericMessage compris)
+     */
+    Patient createPatient(Segment pid) throws HL7Exception {
+        Patient patient = new Patient();
+        
+        // PID-3 : identifiant (MRN, INS, etc.)
+        String id = Hl7Fields.value(pid, 3, 1);
+        if (id != null) {
+            // Autorité d'affectation (INS, RPPS, OID...) résolue par les tables ANS
+            Identifier identifier = new Identifier()
+                .setSystem(terminology.systemForAssigningAuthority(assigningAuthority(pid)))
+                .setValue(id);
+            patient.addIdentifier(identifier);
+        }
+        
+        // PID-5 : nom et prénom
+        if (Hl7Fields.repetitions(pid, 5) > 0) {
+            HumanName humanName = new HumanName();
+            humanName.setUse(HumanName.NameUse.OFFICIAL);
+            
+            String familyName = Hl7Fields.value(pid, 5, 1);
+            String givenName = Hl7Fields.value(pid, 5, 2);
+            
+            if (familyName != null) {
+                humanName.setFamily(familyName);
+            }
+            
+            if (givenName != null) {
+                humanName.addGiven(givenName);
+            }
+            
+            patient.addName(humanName);
+        }
+        
+        // PID-8 : genre
+        String gender = Hl7Fields.value(pid, 8);
+        if (gender != null) {
+            switch (gender) {
+                case "M":
+                    patient.setGender(Enumerations.AdministrativeGender.MALE);
+                    break;
+                case "F":
+                    patient.setGender(Enumerations.AdministrativeGender.FEMALE);
+                    break;
+                case "O":
+                    patient.setGender(Enumerations.AdministrativeGender.OTHER);
+                    break;
+                default:
+                    patient.setGender(Enumerations.AdministrativeGender.UNKNOWN);
+            }
+        }
+        
+        // PID-7 : date de naissance
+        String birthDateString = Hl7Fields.value(pid, 7);
+        if (birthDateString != null) {
+            try {
+                // Date HL7 (DTM) vers date FHIR, à la précision du message
+                patient.setBirthDateElement(Hl7DateTimeParser.parseDate(birthDateString));
+            } catch (IllegalArgumentException e) {
+                log.warn("Impossible de parser la date de naissance: {}", birthDateString);
+            }
+        }
+        
+        // PID-11 : adresse
+        String street = Hl7Fields.value(pid, 11, 1);
+        String city = Hl7Fields.value(pid, 11, 3);
+        String state = Hl7Fields.value(pid, 11, 4);
+        String zip = Hl7Fields.value(pid, 11, 5);
+        String country = Hl7Fields.value(pid, 11, 6);
+        
+        if (street != null || city != null || state != null || zip != null || country != null) {
+            Address address = new Address();
+            
+            if (street != null) {
+                address.addLine(street);
+            }
+            
+            if (city != null) {
+                address.setCity(city);
+            }
+            
+            if (state != null) {
+                address.setState(state);
+            }
+            
+            if (zip != null) {
+                address.setPostalCode(zip);
+            }
+            
+            if (country != null) {
+                address.setCountry(country);
+            }
+            
+            patient.addAddress(address);
+        }
+        
+        // PID-13 : téléphone
+        String phoneNumber = Hl7Fields.value(pid, 13);
+        if (phoneNumber != null) {
+            ContactPoint contactPoint = new ContactPoint()
+                .setSystem(ContactPoint.ContactPointSystem.PHONE)
+                .setValue(phoneNumber)
+                .setUse(ContactPoint.ContactPointUse.HOME);
+            patient.addTelecom(contactPoint);
+        }
+        
+        return patient;
+    }
+
+    /**
+     * CX-4 : l'OID universel (HD-2, si HD-3 vaut ISO) prime sur l'espace de noms local (HD-1)
+     * Les messages français portent souvent un HD-1 vide ou propre à l'émetteur
+     */
+    private static String assigningAuthority(Segment pid) throws HL7Exception {
+        String universalId = Hl7Fields.subComponent(pid, 3, 4, 2);
+        if (universalId != null && "ISO".equalsIgnoreCase(Hl7Fields.subComponent(pid, 3, 4, 3))) {
+            return universalId;
+        }
+        return Hl7Fields.subComponent(pid, 3, 4, 1);
+    }
+}
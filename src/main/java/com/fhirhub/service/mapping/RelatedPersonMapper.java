@@ -0,0 +1,59 @@
+package com.fhirhub.service.mapping;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Segment;
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.ContactPoint;
+import org.hl7.fhir.r4.model.HumanName;
+import org.hl7.fhir.r4.model.RelatedPerson;
+import org.springframework.stereotype.Component;
+
+/**
+ * NK1 vers RelatedPerson (proche, personne à prévenir)
+ */
+@Component
+public class RelatedPersonMapper implements SegmentMapper {
+
+    @Override
+    public String getSegmentName() {
+        return "NK1";
+    }
+
+    @Override
+    public void map(Segment segment, MappingContext context) throws HL7Exception {
+        // RelatedPerson.patient est obligatoire
+        if (context.getPatientReference() == null) {
+            return;
+        }
+        
+        RelatedPerson relatedPerson = new RelatedPerson();
+        relatedPerson.setPatient(context.getPatientReference());
+        
+        // NK1-2 : nom
+        String familyName = Hl7Fields.value(segment, 2, 1);
+        String givenName = Hl7Fields.value(segment, 2, 2);
+        if (familyName != null || givenName != null) {
+            HumanName name = relatedPerson.addName();
+            name.setFamily(familyName);
+            if (givenName != null) {
+                name.addGiven(givenName);
+            }
+        }
+        
+        // NK1-3 : lien de parenté
+        CodeableConcept relationship = Hl7Fields.codeableConcept(segment, 3);
+        if (relationship != null) {
+            relatedPerson.addRelationship(relationship);
+        }
+        
+        // NK1-5 : téléphone
+        String phoneNumber = Hl7Fields.value(segment, 5);
+        if (phoneNumber != null) {
+            relatedPerson.addTelecom()
+                .setSystem(ContactPoint.ContactPointSystem.PHONE)
+                .setValue(phoneNumber);
+        }
+        
+        context.addResource(relatedPerson);
+    }
+}
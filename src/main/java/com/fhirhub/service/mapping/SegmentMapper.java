@@ -0,0 +1,28 @@
+package com.fhirhub.service.mapping;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Segment;
+
+/**
+ * Mapping d'un segment HL7 vers une ou plusieurs ressources FHIR
+ */
+public interface SegmentMapper {
+
+    /**
+     * Nom du segment pris en charge (PID, PV1, ...)
+     */
+    String getSegmentName();
+
+    /**
+     * Ordre d'exécution dans le plan : le patient puis la venue doivent être
+     * mappés avant les ressources qui les référencent
+     */
+    default int getOrder() {
+        return 100;
+    }
+
+    /**
+     * Mapper une occurrence du segment dans le contexte du message
+     */
+    void map(Segment segment, MappingContext context) throws HL7Exception;
+}